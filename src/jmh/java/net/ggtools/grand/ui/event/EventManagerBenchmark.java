@@ -0,0 +1,225 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks of the {@link EventManager} dispatch path. Each combination
+ * of dispatcher, queue and number of subscribers is measured from one and
+ * from four producer threads, reporting the throughput and the latency
+ * distribution (the p99 appears as <code>p0.99</code> in the sample time
+ * results).
+ * <p>
+ * An operation ends when the event has been delivered to every subscriber so
+ * in asynchronous modes the figures include the hand off to the dispatcher
+ * thread, not just the time needed to queue the event.
+ * <p>
+ * Run with <code>ant benchmark</code>.
+ *
+ * @author Christophe Labouisse
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventManagerBenchmark {
+    /**
+     * An event counting the subscribers it has not been delivered to yet.
+     */
+    public static final class Delivery {
+        /**
+         * Field pending.
+         */
+        private final AtomicInteger pending;
+
+        /**
+         * Constructor for Delivery.
+         * @param subscriberCount int
+         */
+        Delivery(final int subscriberCount) {
+            pending = new AtomicInteger(subscriberCount);
+        }
+
+        /**
+         * Waits until the event has been delivered to every subscriber.
+         */
+        void await() {
+            while (pending.get() > 0) {
+                Thread.yield();
+            }
+        }
+
+        /**
+         * Records the delivery to one subscriber.
+         */
+        void delivered() {
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * A subscriber acknowledging the events it receives.
+     */
+    public static class Listener {
+        /**
+         * Method eventReceived.
+         * @param event Object
+         */
+        public void eventReceived(final Object event) {
+            ((Delivery) event).delivered();
+        }
+    }
+
+    /**
+     * Dispatcher implementation: <code>simple</code> for reflection,
+     * <code>lambda</code> for generated direct calls.
+     */
+    @Param({"simple", "lambda"})
+    public String dispatcherType;
+
+    /**
+     * Queue mode: <code>sync</code> for synchronous dispatch,
+     * <code>linked</code> and <code>ring</code> for asynchronous dispatch
+     * through the linked and the lock free queue.
+     */
+    @Param({"sync", "linked", "ring"})
+    public String queueMode;
+
+    /**
+     * Field subscriberCount.
+     */
+    @Param({"1", "10", "100"})
+    public int subscriberCount;
+
+    /**
+     * Field asynchronous.
+     */
+    private boolean asynchronous;
+
+    /**
+     * Field dispatcher.
+     */
+    private Dispatcher dispatcher;
+
+    /**
+     * Field eventManager.
+     */
+    private EventManager eventManager;
+
+    /**
+     * Strong references to the subscribers, the event manager only keeps
+     * weak ones.
+     */
+    private final List<Listener> listeners = new ArrayList<>();
+
+    /**
+     * Delivers one event from a single producer.
+     */
+    @Benchmark
+    @Threads(1)
+    public void dispatch() {
+        dispatchOne();
+    }
+
+    /**
+     * Delivers one event from four concurrent producers.
+     */
+    @Benchmark
+    @Threads(4)
+    public void dispatchFromFourThreads() {
+        dispatchOne();
+    }
+
+    /**
+     * Creates the event manager and subscribes the listeners.
+     * @throws NoSuchMethodException if the listener method cannot be found
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchMethodException {
+        asynchronous = !"sync".equals(queueMode);
+        eventManager = new EventManager("Benchmark", "ring".equals(queueMode));
+        eventManager.setDefaultDispatchAsynchronous(asynchronous);
+        final DispatcherFactory factory = "simple".equals(dispatcherType)
+                ? new SimpleDispatcherFactory() : new LambdaDispatcherFactory();
+        dispatcher = factory.createDispatcher(eventManager,
+                Listener.class.getDeclaredMethod("eventReceived", Object.class));
+        for (int i = 0; i < subscriberCount; i++) {
+            final Listener listener = new Listener();
+            listeners.add(listener);
+            eventManager.subscribe(listener);
+        }
+
+        // Subscriptions are queued, wait for them to be processed.
+        eventManager.setDefaultDispatchAsynchronous(true);
+        final Delivery warmUp = new Delivery(subscriberCount);
+        dispatcher.dispatch(warmUp);
+        warmUp.await();
+        eventManager.setDefaultDispatchAsynchronous(asynchronous);
+    }
+
+    /**
+     * Drops the listeners and stops the dispatcher thread.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        eventManager.clear();
+        eventManager.shutdown();
+        listeners.clear();
+    }
+
+    /**
+     * Dispatches an event and waits for it to be delivered.
+     */
+    private void dispatchOne() {
+        final Delivery delivery = new Delivery(subscriberCount);
+        dispatcher.dispatch(delivery);
+        delivery.await();
+    }
+}
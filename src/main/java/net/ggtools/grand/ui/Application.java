@@ -34,6 +34,9 @@ import java.util.Properties;
 import net.ggtools.grand.Configuration;
 import net.ggtools.grand.log.LoggerManager;
 import net.ggtools.grand.ui.log.CommonsLoggingLoggerFactory;
+import net.ggtools.grand.ui.log.LogEventBufferImpl;
+import net.ggtools.grand.ui.log.LogViewer;
+import net.ggtools.grand.ui.prefs.PreferenceKeys;
 import net.ggtools.grand.ui.widgets.ExceptionDialog;
 import net.ggtools.grand.ui.widgets.GraphWindow;
 import net.ggtools.grand.ui.widgets.Splash;
@@ -291,6 +294,12 @@ public class Application implements Runnable {
         }
         preferenceStore = new GrandUiPrefStore();
         // TODO init with default values.
+        configureLogBuffer();
+        preferenceStore.addPropertyChangeListener(event -> {
+            if (event.getProperty().startsWith(PreferenceKeys.LOG_PREFIX)) {
+                configureLogBuffer();
+            }
+        });
 
         if (LOG.isDebugEnabled()) {
             LOG.debug("Initializing font registry");
@@ -313,6 +322,7 @@ public class Application implements Runnable {
                 "resource/link-icon.png"));
         imageRegistry.put(NODE_ICON, ImageDescriptor.createFromFile(Application.class,
                 "resource/node-icon.png"));
+        LogViewer.registerLevelIcons(imageRegistry);
 
         if (LOG.isDebugEnabled()) {
             LOG.debug("Initializing colors");
@@ -325,6 +335,21 @@ public class Application implements Runnable {
         LoggerManager.setFactory(new CommonsLoggingLoggerFactory());
     }
 
+    /**
+     * Applies the log capture and retention preferences to the log buffer.
+     * The buffer is created with the default settings as soon as the first
+     * logger is, long before the preferences are loaded.
+     */
+    private void configureLogBuffer() {
+        LogEventBufferImpl.getInstance().setRetention(
+                preferenceStore.getInt(PreferenceKeys.LOG_BUFFER_CAPACITY),
+                preferenceStore.getInt(PreferenceKeys.LOG_BUFFER_ERROR_QUOTA),
+                preferenceStore.getInt(PreferenceKeys.LOG_BUFFER_WARNING_QUOTA),
+                preferenceStore.getInt(PreferenceKeys.LOG_BUFFER_INFO_QUOTA));
+        LogEventBufferImpl.getInstance().setCaptureLevel(
+                preferenceStore.getInt(PreferenceKeys.LOG_CAPTURE_LEVEL));
+    }
+
     /**
      *
      * @see java.lang.Runnable#run()
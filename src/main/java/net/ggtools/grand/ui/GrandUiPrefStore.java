@@ -34,10 +34,10 @@ import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
 import net.ggtools.grand.ui.prefs.ComplexPreferenceStore;
+import net.ggtools.grand.ui.prefs.GeneralPreferencePage;
 import net.ggtools.grand.ui.prefs.GraphPreferencePage;
 import net.ggtools.grand.ui.prefs.LinksPreferencePage;
 import net.ggtools.grand.ui.prefs.NodesPreferencePage;
-import net.ggtools.grand.ui.prefs.PreferenceKeys;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -73,6 +73,16 @@ public class GrandUiPrefStore extends ComplexPreferenceStore {
         }
     }
 
+    /**
+     * Returns the directory holding the preferences and the other
+     * persistent data of the application.
+     *
+     * @return File
+     */
+    public final File getBaseDir() {
+        return baseDir;
+    }
+
     /**
      * Method save.
      * @throws IOException if mkdirs() fails
@@ -114,7 +124,7 @@ public class GrandUiPrefStore extends ComplexPreferenceStore {
      * Method setDefaults.
      */
     private void setDefaults() {
-        setDefault(PreferenceKeys.MAX_RECENT_FILES_PREFS_KEY, 4);
+        GeneralPreferencePage.setDefaults(this);
         GraphPreferencePage.setDefaults(this);
         NodesPreferencePage.setDefaults(this);
         LinksPreferencePage.setDefaults(this);
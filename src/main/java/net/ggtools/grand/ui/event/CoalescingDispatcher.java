@@ -0,0 +1,116 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.event;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A dispatcher only delivering the latest of the events dispatched while the
+ * previous ones were waiting in the queue. A burst of events is thus
+ * delivered once to each subscriber. Since an event may be delivered after
+ * the next ones have been dispatched, the events should be immutable.
+ * <p>
+ * The coalescing only happens with asynchronous dispatching,
+ * <code>null</code> events are never coalesced.
+ *
+ * @author Christophe Labouisse
+ */
+class CoalescingDispatcher implements Dispatcher {
+    /**
+     * Field delegate.
+     */
+    private final Dispatcher delegate;
+
+    /**
+     * Field eventManager.
+     */
+    private final EventManager eventManager;
+
+    /**
+     * Latest event not delivered yet.
+     */
+    private final AtomicReference<Object> pendingEvent = new AtomicReference<>();
+
+    /**
+     * Value of the event manager clear count when the pending event has been
+     * queued.
+     */
+    private volatile int queuedClearCount;
+
+    /**
+     * Constructor for CoalescingDispatcher.
+     * @param eventManager EventManager
+     * @param delegate
+     *            the dispatcher sending the events to the subscribers.
+     */
+    CoalescingDispatcher(final EventManager eventManager, final Dispatcher delegate) {
+        this.eventManager = eventManager;
+        this.delegate = delegate;
+    }
+
+    /**
+     * Method dispatch.
+     * @param eventData Object
+     * @see net.ggtools.grand.ui.event.Dispatcher#dispatch(java.lang.Object)
+     */
+    public final void dispatch(final Object eventData) {
+        if ((eventData == null) || !eventManager.isDefaultDispatchAsynchronous()) {
+            delegate.dispatch(eventData);
+            return;
+        }
+
+        // Queue the delivery unless one is already waiting and has not been
+        // discarded by clearing the event manager.
+        final int clearCount = eventManager.getClearCount();
+        if ((pendingEvent.getAndSet(eventData) == null) || (queuedClearCount != clearCount)) {
+            queuedClearCount = clearCount;
+            eventManager.dispatchCoalescedEvent(this);
+        }
+    }
+
+    /**
+     * Method sendEventToSubscriber.
+     * @param subscriber Object
+     * @param eventData Object
+     * @see net.ggtools.grand.ui.event.Dispatcher#sendEventToSubscriber(java.lang.Object, java.lang.Object)
+     */
+    public final void sendEventToSubscriber(final Object subscriber, final Object eventData) {
+        delegate.sendEventToSubscriber(subscriber, eventData);
+    }
+
+    /**
+     * Takes the event to deliver.
+     *
+     * @return the latest event or <code>null</code> if it has already been
+     *         delivered.
+     */
+    final Object takePendingEvent() {
+        return pendingEvent.getAndSet(null);
+    }
+}
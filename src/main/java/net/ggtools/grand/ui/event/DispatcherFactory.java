@@ -36,6 +36,13 @@ import java.lang.reflect.Method;
  * @author Christophe Labouisse
  */
 abstract class DispatcherFactory {
+    /**
+     * System property selecting the factory: <code>lambda</code> for the
+     * generated dispatchers, anything else for the reflection based ones.
+     * (value is {@value #FACTORY_PROPERTY})
+     */
+    static final String FACTORY_PROPERTY = "grand.ui.event.dispatcher";
+
     /**
      * Field instance.
      */
@@ -54,7 +61,11 @@ abstract class DispatcherFactory {
      */
     static final DispatcherFactory getInstance() {
         if (instance == null) {
-            instance = new SimpleDispatcherFactory();
+            if ("lambda".equals(System.getProperty(FACTORY_PROPERTY))) {
+                instance = new LambdaDispatcherFactory();
+            } else {
+                instance = new SimpleDispatcherFactory();
+            }
         }
 
         return instance;
@@ -30,113 +30,61 @@ package net.ggtools.grand.ui.event;
 
 import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
-import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 /**
+ * Dispatches events to a list of subscribers, either synchronously or from a
+ * dedicated thread. The subscribers are referenced weakly and kept in a copy
+ * on write array so the events are sent without holding any lock.
+ * <p>
+ * The pending actions of the dispatcher thread are kept by default in an
+ * unbounded linked queue. Setting the <code>{@value #LOCK_FREE_PROPERTY}</code>
+ * system property to <code>true</code> switches to a bounded lock free ring
+ * buffer of {@value #RING_BUFFER_CAPACITY} slots.
+ * <p>
+ * The dispatcher thread runs until {@link #shutdown()} is called.
+ *
  * @author Christophe Labouisse
  */
 public class EventManager implements Runnable {
 
     /**
-     * @author Christophe Labouisse
+     * System property selecting the default queue implementation.
+     * (value is {@value #LOCK_FREE_PROPERTY})
      */
-    private final class DispatchEventAction implements Runnable {
-
-        /**
-         * Field dispatcher.
-         */
-        private final Dispatcher dispatcher;
-
-        /**
-         * Field event.
-         */
-        private final Object event;
-
-        /**
-         * Constructor for DispatchEventAction.
-         * @param event Object
-         * @param dispatcher Dispatcher
-         */
-        public DispatchEventAction(final Object event, final Dispatcher dispatcher) {
-            this.event = event;
-            this.dispatcher = dispatcher;
-        }
-
-        /**
-         * Dispatch one event.
-         *
-         * @see EventManager#dispatchOneEvent(Object, Dispatcher)
-         * @see java.lang.Runnable#run()
-         */
-        public void run() {
-            dispatchOneEvent(event, dispatcher);
-        }
-    }
+    public static final String LOCK_FREE_PROPERTY = "grand.ui.event.lockfree";
 
     /**
-     * @author Christophe Labouisse
+     * Field log.
      */
-    private final class SubscriptionAction implements Runnable {
-        /**
-         * Field subscriber.
-         */
-        private final Object subscriber;
-
-        /**
-         * Constructor for SubscriptionAction.
-         * @param subscriber Object
-         */
-        public SubscriptionAction(final Object subscriber) {
-            this.subscriber = subscriber;
-        }
-
-        /**
-         * Add the subscriber to the event's dispatcher subscription list.
-         *
-         * @see java.lang.Runnable#run()
-         */
-        public void run() {
-            doSubscription(subscriber);
-        }
-    }
+    private static final Log LOG = LogFactory.getLog(EventManager.class);
 
     /**
-     * @author Christophe Labouisse
+     * Empty listener array.
      */
-    private final class UnsubscriptionAction implements Runnable {
-        /**
-         * Field subscriber.
-         */
-        private final Object subscriber;
+    private static final WeakReference<?>[] NO_LISTENERS = new WeakReference<?>[0];
 
-        /**
-         * Constructor for UnsubscriptionAction.
-         * @param subscriber Object
-         */
-        public UnsubscriptionAction(final Object subscriber) {
-            this.subscriber = subscriber;
-        }
+    /**
+     * Number of slots of the lock free queue.
+     * (value is {@value #RING_BUFFER_CAPACITY})
+     */
+    public static final int RING_BUFFER_CAPACITY = 1024;
 
-        /**
-         * Add the subscriber to the event's dispatcher subscription list.
-         *
-         * @see EventManager#doUnsubscription(Object)
-         * @see java.lang.Runnable#run()
-         */
-        public void run() {
-            doUnsubscription(subscriber);
-        }
-    }
+    /**
+     * Maximum time in milliseconds {@link #shutdown()} waits for the
+     * dispatcher thread to stop.
+     * (value is {@value #SHUTDOWN_TIMEOUT})
+     */
+    private static final long SHUTDOWN_TIMEOUT = 1000;
 
     /**
-     * Field log.
+     * Number of times the manager has been cleared.
      */
-    private static final Log LOG = LogFactory.getLog(EventManager.class);
+    private volatile int clearCount;
 
     /**
      * Field defaultDispatchAsynchronous.
@@ -156,19 +104,28 @@ public class EventManager implements Runnable {
     /**
      * Field eventQueue.
      */
-    private final LinkedList<Runnable> eventQueue = new LinkedList<>();
+    private final EventQueue eventQueue;
 
     /**
-     * Field listenerList.
+     * Subscribers, replaced by a new array on each modification.
      */
-    private final List<WeakReference<Object>> listenerList =
-            new LinkedList<>();
+    private volatile WeakReference<?>[] listeners = NO_LISTENERS;
+
+    /**
+     * Lock serializing the modifications of the listeners.
+     */
+    private final Object listenersLock = new Object();
 
     /**
      * Field name.
      */
     private final String name;
 
+    /**
+     * Cleared when the manager is shut down.
+     */
+    private volatile boolean running = true;
+
     /**
      * Creates a event dispatcher. The created dispatcher will have the
      * "Anonymous" name and will log the dispatching process.
@@ -184,7 +141,22 @@ public class EventManager implements Runnable {
      * @param name String
      */
     public EventManager(final String name) {
+        this(name, Boolean.getBoolean(LOCK_FREE_PROPERTY));
+    }
+
+    /**
+     * Creates an named event dispatcher using a specific queue
+     * implementation.
+     *
+     * @param name String
+     * @param lockFree
+     *            <code>true</code> to use a bounded lock free queue,
+     *            <code>false</code> to use an unbounded linked queue.
+     */
+    public EventManager(final String name, final boolean lockFree) {
         this.name = name;
+        eventQueue = lockFree ? new RingBufferEventQueue(RING_BUFFER_CAPACITY)
+                : new LinkedEventQueue();
         dispatcherThread = new Thread(this, "Dispatcher thread " + name);
         dispatcherThread.start();
         dispatcherFactory = DispatcherFactory.getInstance();
@@ -197,12 +169,11 @@ public class EventManager implements Runnable {
         if (LOG.isInfoEnabled()) {
             LOG.info("Clearing event manager");
         }
-        synchronized (eventQueue) {
-            eventQueue.clear();
-        }
+        eventQueue.clear();
 
-        synchronized (listenerList) {
-            listenerList.clear();
+        synchronized (listenersLock) {
+            listeners = NO_LISTENERS;
+            clearCount++;
         }
 
     }
@@ -216,6 +187,18 @@ public class EventManager implements Runnable {
         return dispatcherFactory.createDispatcher(this, method);
     }
 
+    /**
+     * Creates a new dispatcher calling a specific method when invoked and
+     * coalescing the events: when several events are dispatched before the
+     * first one could be delivered, only the latest is delivered. The events
+     * should be immutable.
+     * @param method method to call on invocation
+     * @return a new dispatcher.
+     */
+    public final Dispatcher createCoalescingDispatcher(final Method method) {
+        return new CoalescingDispatcher(this, dispatcherFactory.createDispatcher(this, method));
+    }
+
     /**
      * @return String
      */
@@ -235,40 +218,7 @@ public class EventManager implements Runnable {
      * @see java.lang.Runnable#run()
      */
     public final void run() {
-        // Main loop.
-        while (true) {
-            Runnable nextEvent;
-
-            // Process the events in queue.
-            do {
-                nextEvent = null;
-
-                // In order to avoid deadlocks, we only synchronize to the
-                // eventQueue
-                // when getting the next event.
-                synchronized (eventQueue) {
-                    if (!eventQueue.isEmpty()) {
-                        nextEvent = eventQueue.removeFirst();
-                    }
-                }
-
-                // Run should not be called from a synchronized section.
-                if (nextEvent != null) {
-                    nextEvent.run();
-                }
-            } while (nextEvent != null);
-
-            try {
-                synchronized (eventQueue) {
-                    // Wait for more events to come.
-                    eventQueue.wait();
-                }
-            } catch (final InterruptedException e) {
-                if (LOG.isTraceEnabled()) {
-                    LOG.trace("Event queue watch interrupted");
-                }
-            }
-        }
+        eventQueue.processActions(this);
     }
 
     /**
@@ -281,15 +231,35 @@ public class EventManager implements Runnable {
         this.defaultDispatchAsynchronous = defaultDispatchAsynchronous;
     }
 
+    /**
+     * Stops the dispatcher thread. The actions still pending are dropped as
+     * well as the ones queued afterwards, synchronous dispatches keep
+     * working. Unless called from the dispatcher thread, this method waits
+     * for the thread to stop for at most {@value #SHUTDOWN_TIMEOUT} ms.
+     */
+    public final void shutdown() {
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Shutting down event manager " + name);
+        }
+        running = false;
+        eventQueue.stop();
+        dispatcherThread.interrupt();
+        if (Thread.currentThread() != dispatcherThread) {
+            try {
+                dispatcherThread.join(SHUTDOWN_TIMEOUT);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     /**
      * Add a new listener.
      *
      * @param listener Object
      */
     public final void subscribe(final Object listener) {
-        synchronized (eventQueue) {
-            eventQueue.add(new SubscriptionAction(listener));
-        }
+        enqueue(EventQueue.SUBSCRIBE, listener, null);
     }
 
     /**
@@ -297,24 +267,7 @@ public class EventManager implements Runnable {
      * @param listener Object
      */
     public final void unSubscribe(final Object listener) {
-        synchronized (eventQueue) {
-            eventQueue.add(new UnsubscriptionAction(listener));
-        }
-    }
-
-    /**
-     * Dispatch an event asynchronously. This method guarantees that the events
-     * will be processed in the order of reception.
-     *
-     * @param event Object
-     * @param dispatcher Dispatcher
-     */
-    private void asynchronousDispatchEvent(final Object event,
-            final Dispatcher dispatcher) {
-        synchronized (eventQueue) {
-            eventQueue.add(new DispatchEventAction(event, dispatcher));
-            eventQueue.notify();
-        }
+        enqueue(EventQueue.UNSUBSCRIBE, listener, null);
     }
 
     /**
@@ -328,30 +281,27 @@ public class EventManager implements Runnable {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Start dispatching to " + dispatcher);
         }
-        synchronized (listenerList) {
-            for (final Iterator<WeakReference<Object>> iterator = listenerList.iterator(); iterator.hasNext();) {
-                final WeakReference<Object> weakReference = iterator.next();
-                final Object subscriber = weakReference.get();
-
-                if (subscriber != null) {
-                    if (LOG.isTraceEnabled()) {
-                        LOG.trace("Dispatching " + eventData + " to " + subscriber);
-                    }
-                    dispatcher.sendEventToSubscriber(subscriber, eventData);
-                } else {
-                    // Remove the listener since it has been garbage collected.
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Removing weak reference " + weakReference);
-                    }
-                    iterator.remove();
+        boolean hasCollectedListeners = false;
+        for (final WeakReference<?> weakReference : listeners) {
+            final Object subscriber = weakReference.get();
+
+            if (subscriber != null) {
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Dispatching " + eventData + " to " + subscriber);
                 }
+                dispatcher.sendEventToSubscriber(subscriber, eventData);
+            } else {
+                hasCollectedListeners = true;
             }
         }
+
+        if (hasCollectedListeners) {
+            removeCollectedListeners();
+        }
     }
 
     /**
-     * Add a new subscriber to the dispatch list. This method will do nothing if
-     * the subscriber is already in the list.
+     * Add a new subscriber to the dispatch list.
      *
      * @param listener Object
      */
@@ -360,8 +310,11 @@ public class EventManager implements Runnable {
             LOG.debug(name + " subscribing " + listener);
         }
 
-        synchronized (listenerList) {
-            listenerList.add(new WeakReference<>(listener));
+        synchronized (listenersLock) {
+            final WeakReference<?>[] newListeners = new WeakReference<?>[listeners.length + 1];
+            System.arraycopy(listeners, 0, newListeners, 0, listeners.length);
+            newListeners[listeners.length] = new WeakReference<>(listener);
+            listeners = newListeners;
         }
     }
 
@@ -376,12 +329,14 @@ public class EventManager implements Runnable {
             LOG.debug(name + " unsubscribing " + listener);
         }
 
-        synchronized (listenerList) {
-            for (final Iterator<WeakReference<Object>> iterator = listenerList.iterator(); iterator.hasNext();) {
-                final WeakReference<Object> weakRef = iterator.next();
-
-                if (weakRef.get() == listener) {
-                    iterator.remove();
+        synchronized (listenersLock) {
+            final WeakReference<?>[] current = listeners;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i].get() == listener) {
+                    final WeakReference<?>[] newListeners = new WeakReference<?>[current.length - 1];
+                    System.arraycopy(current, 0, newListeners, 0, i);
+                    System.arraycopy(current, i + 1, newListeners, i, current.length - i - 1);
+                    listeners = newListeners;
                     break;
                 }
             }
@@ -389,14 +344,46 @@ public class EventManager implements Runnable {
     }
 
     /**
-     * Dispatch an event synchronously.
+     * Adds an action to the queue.
      *
-     * @param event Object
+     * @param action int
+     * @param data Object
      * @param dispatcher Dispatcher
      */
-    private void synchronousDispatchEvent(final Object event,
-            final Dispatcher dispatcher) {
-        dispatchOneEvent(event, dispatcher);
+    private void enqueue(final int action, final Object data, final Dispatcher dispatcher) {
+        if (!running) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(name + " is shut down, dropping action " + action);
+            }
+            return;
+        }
+        eventQueue.add(action, data, dispatcher);
+    }
+
+    /**
+     * Removes the listeners which have been garbage collected.
+     */
+    private void removeCollectedListeners() {
+        synchronized (listenersLock) {
+            final List<WeakReference<?>> alive = new ArrayList<>(listeners.length);
+            for (final WeakReference<?> weakReference : listeners) {
+                if (weakReference.get() != null) {
+                    alive.add(weakReference);
+                } else if (LOG.isDebugEnabled()) {
+                    LOG.debug("Removing weak reference " + weakReference);
+                }
+            }
+            listeners = alive.toArray(NO_LISTENERS);
+        }
+    }
+
+    /**
+     * Tells if the dispatcher thread should keep processing actions.
+     *
+     * @return <code>false</code> once the manager has been shut down.
+     */
+    final boolean isRunning() {
+        return running;
     }
 
     /**
@@ -410,9 +397,54 @@ public class EventManager implements Runnable {
     final void dispatchEvent(final Object eventData,
             final Dispatcher dispatcher) {
         if (defaultDispatchAsynchronous) {
-            asynchronousDispatchEvent(eventData, dispatcher);
+            enqueue(EventQueue.DISPATCH, eventData, dispatcher);
         } else {
-            synchronousDispatchEvent(eventData, dispatcher);
+            dispatchOneEvent(eventData, dispatcher);
+        }
+    }
+
+    /**
+     * Queues the delivery of the latest event of a coalescing dispatcher.
+     *
+     * @param dispatcher CoalescingDispatcher
+     */
+    final void dispatchCoalescedEvent(final CoalescingDispatcher dispatcher) {
+        enqueue(EventQueue.COALESCED_DISPATCH, dispatcher, null);
+    }
+
+    /**
+     * @return the number of times the manager has been cleared.
+     */
+    final int getClearCount() {
+        return clearCount;
+    }
+
+    /**
+     * Processes an action taken from the queue.
+     *
+     * @param action int
+     * @param data Object
+     * @param dispatcher Dispatcher
+     */
+    final void processAction(final int action, final Object data,
+            final Dispatcher dispatcher) {
+        switch (action) {
+        case EventQueue.SUBSCRIBE:
+            doSubscription(data);
+            break;
+        case EventQueue.UNSUBSCRIBE:
+            doUnsubscription(data);
+            break;
+        case EventQueue.COALESCED_DISPATCH:
+            final CoalescingDispatcher coalescingDispatcher = (CoalescingDispatcher) data;
+            final Object latestEvent = coalescingDispatcher.takePendingEvent();
+            if (latestEvent != null) {
+                dispatchOneEvent(latestEvent, coalescingDispatcher);
+            }
+            break;
+        default:
+            dispatchOneEvent(data, dispatcher);
+            break;
         }
     }
 
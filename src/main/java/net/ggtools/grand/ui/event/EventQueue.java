@@ -0,0 +1,113 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.event;
+
+/**
+ * Queue of the actions waiting to be processed by the dispatcher thread of an
+ * {@link EventManager}. An action is either an event dispatch or a
+ * (un)subscription, they are processed in the order they were added.
+ *
+ * @author Christophe Labouisse
+ */
+abstract class EventQueue {
+    /**
+     * Action dispatching an event.
+     * (value is {@value #DISPATCH})
+     */
+    static final int DISPATCH = 0;
+
+    /**
+     * Action dispatching the latest event of a {@link CoalescingDispatcher}.
+     * (value is {@value #COALESCED_DISPATCH})
+     */
+    static final int COALESCED_DISPATCH = 3;
+
+    /**
+     * Action adding a subscriber.
+     * (value is {@value #SUBSCRIBE})
+     */
+    static final int SUBSCRIBE = 1;
+
+    /**
+     * Action removing a subscriber.
+     * (value is {@value #UNSUBSCRIBE})
+     */
+    static final int UNSUBSCRIBE = 2;
+
+    /**
+     * Set when the manager has been shut down.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Adds an action to the queue. This method may be called from any thread,
+     * the actions added by one thread are processed in the order they were
+     * added.
+     *
+     * @param action
+     *            one of {@link #DISPATCH}, {@link #COALESCED_DISPATCH},
+     *            {@link #SUBSCRIBE} or {@link #UNSUBSCRIBE}.
+     * @param data
+     *            the event, the coalescing dispatcher or the subscriber.
+     * @param dispatcher
+     *            the dispatcher for events, <code>null</code> otherwise.
+     */
+    abstract void add(int action, Object data, Dispatcher dispatcher);
+
+    /**
+     * Removes all the pending actions.
+     */
+    abstract void clear();
+
+    /**
+     * Processes the actions as they come. This method is run by the
+     * dispatcher thread and returns once the manager has been shut down.
+     *
+     * @param manager
+     *            the manager processing the actions.
+     */
+    abstract void processActions(EventManager manager);
+
+    /**
+     * Tells if the manager has been shut down.
+     *
+     * @return boolean
+     */
+    final boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Marks the queue as stopped: producers waiting for room give up and
+     * drop their action.
+     */
+    final void stop() {
+        stopped = true;
+    }
+}
@@ -0,0 +1,82 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.event;
+
+import java.util.function.BiConsumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A dispatcher sending the events through a generated function calling the
+ * listener method directly, without reflection.
+ *
+ * @author Christophe Labouisse
+ */
+class LambdaDispatcher extends DispatcherAdapter implements Dispatcher {
+    /**
+     * Field log.
+     */
+    private static final Log LOG = LogFactory.getLog(LambdaDispatcher.class);
+
+    /**
+     * Field invoker.
+     */
+    private final BiConsumer<Object, Object> invoker;
+
+    /**
+     * Constructor for LambdaDispatcher.
+     * @param manager EventManager
+     * @param invoker
+     *            function calling the listener method on a subscriber with
+     *            the event as argument.
+     */
+    LambdaDispatcher(final EventManager manager, final BiConsumer<Object, Object> invoker) {
+        super(manager);
+        this.invoker = invoker;
+    }
+
+    /**
+     * Method sendEventToSubscriber.
+     * @param subscriber Object
+     * @param eventData Object
+     * @see net.ggtools.grand.ui.event.Dispatcher#sendEventToSubscriber(java.lang.Object, java.lang.Object)
+     */
+    public void sendEventToSubscriber(final Object subscriber,
+            final Object eventData) {
+        try {
+            invoker.accept(subscriber, eventData);
+        } catch (final Throwable e) {
+            // Same wrapping as SimpleDispatcher so switching the factory does
+            // not change what the callers see.
+            LOG.error(getEventManager().getName() + " dispatchOneEvent", e);
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.event;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Factory creating {@link net.ggtools.grand.ui.event.LambdaDispatcher}s. The
+ * function calling the listener method is generated once per method using
+ * {@link LambdaMetafactory}. Methods which cannot be bound that way, like
+ * non public ones, are called through a cached {@link MethodHandle} and, as a
+ * last resort, with a {@link net.ggtools.grand.ui.event.SimpleDispatcher}.
+ * <p>
+ * This factory is used when the <code>grand.ui.event.dispatcher</code> system
+ * property is set to <code>lambda</code>.
+ *
+ * @author Christophe Labouisse
+ */
+class LambdaDispatcherFactory extends DispatcherFactory {
+    /**
+     * Field log.
+     */
+    private static final Log LOG = LogFactory.getLog(LambdaDispatcherFactory.class);
+
+    /**
+     * Rethrows an exception without wrapping it, even a checked one, so
+     * {@link LambdaDispatcher} gets the exception thrown by the listener.
+     * @param e Throwable
+     * @return never returns
+     * @throws T the exception
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> RuntimeException rethrow(final Throwable e) throws T {
+        throw (T) e;
+    }
+
+    /**
+     * Field invokers.
+     */
+    private final Map<Method, BiConsumer<Object, Object>> invokers =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Method createDispatcher.
+     * @param eventManager EventManager
+     * @param method Method
+     * @return Dispatcher
+     * @see net.ggtools.grand.ui.event.DispatcherFactory#createDispatcher(net.ggtools.grand.ui.event.EventManager,
+     *      java.lang.reflect.Method)
+     */
+    @Override
+    Dispatcher createDispatcher(final EventManager eventManager,
+            final Method method) {
+        if (method.getParameterTypes().length != 1) {
+            return new SimpleDispatcher(eventManager, method);
+        }
+
+        BiConsumer<Object, Object> invoker = invokers.get(method);
+        if (invoker == null) {
+            try {
+                invoker = createInvoker(method);
+            } catch (final Throwable e) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Cannot generate invoker for " + method
+                            + ", using reflection", e);
+                }
+                return new SimpleDispatcher(eventManager, method);
+            }
+            invokers.put(method, invoker);
+        }
+        return new LambdaDispatcher(eventManager, invoker);
+    }
+
+    /**
+     * Creates the function calling a listener method.
+     * @param method Method
+     * @return BiConsumer&lt;Object,Object&gt;
+     * @throws Throwable if the method cannot be bound
+     */
+    @SuppressWarnings("unchecked")
+    private BiConsumer<Object, Object> createInvoker(final Method method) throws Throwable {
+        final MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            final MethodHandle target = lookup.unreflect(method);
+            final CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class), target,
+                    MethodType.methodType(void.class, method.getDeclaringClass(),
+                            method.getParameterTypes()[0]));
+            return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+        } catch (final IllegalAccessException | RuntimeException | LinkageError e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Cannot generate lambda for " + method + ", using a method handle");
+            }
+        }
+
+        method.setAccessible(true);
+        final MethodHandle handle = lookup.unreflect(method)
+                .asType(MethodType.methodType(void.class, Object.class, Object.class));
+        return (subscriber, eventData) -> {
+            try {
+                handle.invokeExact(subscriber, eventData);
+            } catch (final Throwable e) {
+                throw LambdaDispatcherFactory.<RuntimeException>rethrow(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,155 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.event;
+
+import java.util.LinkedList;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * An unbounded event queue based on a linked list guarded by its monitor.
+ *
+ * @author Christophe Labouisse
+ */
+final class LinkedEventQueue extends EventQueue {
+
+    /**
+     * A pending action.
+     */
+    private static final class QueuedAction {
+        /**
+         * Field action.
+         */
+        private final int action;
+
+        /**
+         * Field data.
+         */
+        private final Object data;
+
+        /**
+         * Field dispatcher.
+         */
+        private final Dispatcher dispatcher;
+
+        /**
+         * Constructor for QueuedAction.
+         * @param action int
+         * @param data Object
+         * @param dispatcher Dispatcher
+         */
+        private QueuedAction(final int action, final Object data, final Dispatcher dispatcher) {
+            this.action = action;
+            this.data = data;
+            this.dispatcher = dispatcher;
+        }
+    }
+
+    /**
+     * Field log.
+     */
+    private static final Log LOG = LogFactory.getLog(LinkedEventQueue.class);
+
+    /**
+     * Field eventQueue.
+     */
+    private final LinkedList<QueuedAction> eventQueue = new LinkedList<>();
+
+    /**
+     * Method add.
+     * @param action int
+     * @param data Object
+     * @param dispatcher Dispatcher
+     * @see net.ggtools.grand.ui.event.EventQueue#add(int, Object, Dispatcher)
+     */
+    @Override
+    void add(final int action, final Object data, final Dispatcher dispatcher) {
+        synchronized (eventQueue) {
+            eventQueue.add(new QueuedAction(action, data, dispatcher));
+            eventQueue.notify();
+        }
+    }
+
+    /**
+     * Method clear.
+     * @see net.ggtools.grand.ui.event.EventQueue#clear()
+     */
+    @Override
+    void clear() {
+        synchronized (eventQueue) {
+            eventQueue.clear();
+        }
+    }
+
+    /**
+     * Method processActions.
+     * @param manager EventManager
+     * @see net.ggtools.grand.ui.event.EventQueue#processActions(EventManager)
+     */
+    @Override
+    void processActions(final EventManager manager) {
+        // Main loop.
+        while (manager.isRunning()) {
+            QueuedAction nextAction;
+
+            // Process the events in queue.
+            do {
+                nextAction = null;
+
+                // In order to avoid deadlocks, we only synchronize to the
+                // eventQueue when getting the next event.
+                synchronized (eventQueue) {
+                    if (!eventQueue.isEmpty()) {
+                        nextAction = eventQueue.removeFirst();
+                    }
+                }
+
+                // Actions should not be processed from a synchronized section.
+                if (nextAction != null) {
+                    manager.processAction(nextAction.action, nextAction.data,
+                            nextAction.dispatcher);
+                }
+            } while ((nextAction != null) && manager.isRunning());
+
+            try {
+                synchronized (eventQueue) {
+                    // Wait for more events to come.
+                    if (eventQueue.isEmpty() && manager.isRunning()) {
+                        eventQueue.wait();
+                    }
+                }
+            } catch (final InterruptedException e) {
+                if (LOG.isTraceEnabled()) {
+                    LOG.trace("Event queue watch interrupted");
+                }
+            }
+        }
+    }
+}
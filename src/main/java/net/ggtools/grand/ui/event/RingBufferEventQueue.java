@@ -0,0 +1,330 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.event;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * A bounded, lock free, multiple producers single consumer event queue. The
+ * actions are stored in a ring of preallocated slots so adding an action
+ * does not allocate anything. Each slot carries a sequence number telling
+ * whether it is free for the producers or ready for the consumer. The
+ * consumer parks when the queue is empty and is unparked by the producers.
+ * <p>
+ * When the queue is full the producers wait for a free slot, except the
+ * dispatcher thread itself which cannot wait for itself: its actions go to
+ * an unbounded overflow list, each one tagged with the ring position it has
+ * been added at so it is processed after the actions queued before it. The
+ * waiting producers give up once the manager has been shut down.
+ *
+ * @author Christophe Labouisse
+ */
+final class RingBufferEventQueue extends EventQueue {
+
+    /**
+     * An action added by the dispatcher thread while the ring was full.
+     */
+    private static final class OverflowAction {
+        /**
+         * Field action.
+         */
+        private final int action;
+
+        /**
+         * Field data.
+         */
+        private final Object data;
+
+        /**
+         * Field dispatcher.
+         */
+        private final Dispatcher dispatcher;
+
+        /**
+         * Value of the clear counter when the action was added.
+         */
+        private final long epoch;
+
+        /**
+         * Ring position the action has been added at: it is processed once
+         * all the ring actions before this position have been.
+         */
+        private final long position;
+
+        /**
+         * Constructor for OverflowAction.
+         * @param action int
+         * @param data Object
+         * @param dispatcher Dispatcher
+         * @param epoch long
+         * @param position long
+         */
+        private OverflowAction(final int action, final Object data,
+                final Dispatcher dispatcher, final long epoch, final long position) {
+            this.action = action;
+            this.data = data;
+            this.dispatcher = dispatcher;
+            this.epoch = epoch;
+            this.position = position;
+        }
+    }
+
+    /**
+     * A preallocated queue slot.
+     */
+    private static final class Slot {
+        /**
+         * Field action.
+         */
+        private int action;
+
+        /**
+         * Field data.
+         */
+        private Object data;
+
+        /**
+         * Field dispatcher.
+         */
+        private Dispatcher dispatcher;
+
+        /**
+         * Value of the clear counter when the action was added.
+         */
+        private long epoch;
+
+        /**
+         * Equals to the slot position when the slot is free and to the
+         * position plus one once an action is published.
+         */
+        private volatile long sequence;
+    }
+
+    /**
+     * Time to wait in nanoseconds before checking again for a free slot when
+     * the queue is full.
+     * (value is {@value #FULL_WAIT_NANOS})
+     */
+    private static final long FULL_WAIT_NANOS = 100000L;
+
+    /**
+     * Field log.
+     */
+    private static final Log LOG = LogFactory.getLog(RingBufferEventQueue.class);
+
+    /**
+     * Number of attempts yielding the processor before waiting for a free
+     * slot.
+     * (value is {@value #YIELD_LIMIT})
+     */
+    private static final int YIELD_LIMIT = 100;
+
+    /**
+     * Field consumer.
+     */
+    private volatile Thread consumer;
+
+    /**
+     * Incremented on each {@link #clear()}, actions added before are skipped.
+     */
+    private final AtomicLong epoch = new AtomicLong();
+
+    /**
+     * Position of the next slot to consume, only accessed by the consumer.
+     */
+    private long head;
+
+    /**
+     * Field mask.
+     */
+    private final int mask;
+
+    /**
+     * Actions added by the dispatcher thread while the ring was full, only
+     * accessed by the consumer.
+     */
+    private final ArrayDeque<OverflowAction> overflow = new ArrayDeque<>();
+
+    /**
+     * Field slots.
+     */
+    private final Slot[] slots;
+
+    /**
+     * Position of the next slot to fill.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * <code>true</code> when the consumer is about to park or parked.
+     */
+    private volatile boolean waiting;
+
+    /**
+     * Creates a new queue.
+     *
+     * @param capacity
+     *            the minimal number of slots, rounded up to a power of two.
+     */
+    RingBufferEventQueue(final int capacity) {
+        final int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            slots[i].sequence = i;
+        }
+    }
+
+    /**
+     * Method add.
+     * @param action int
+     * @param data Object
+     * @param dispatcher Dispatcher
+     * @see net.ggtools.grand.ui.event.EventQueue#add(int, Object, Dispatcher)
+     */
+    @Override
+    void add(final int action, final Object data, final Dispatcher dispatcher) {
+        final boolean fromConsumer = Thread.currentThread() == consumer;
+        if (fromConsumer && !overflow.isEmpty()) {
+            // Stay behind the actions already in the overflow.
+            addOverflow(action, data, dispatcher);
+            return;
+        }
+        int attempts = 0;
+        while (true) {
+            final long position = tail.get();
+            final Slot slot = slots[(int) position & mask];
+            final long sequence = slot.sequence;
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slot.action = action;
+                    slot.data = data;
+                    slot.dispatcher = dispatcher;
+                    slot.epoch = epoch.get();
+                    slot.sequence = position + 1;
+                    if (waiting) {
+                        LockSupport.unpark(consumer);
+                    }
+                    return;
+                }
+            } else if (sequence < position) {
+                // The queue is full.
+                if (fromConsumer) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Queue full, overflowing action from the dispatcher thread");
+                    }
+                    addOverflow(action, data, dispatcher);
+                    return;
+                }
+                if (isStopped()) {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Queue stopped, dropping action " + action);
+                    }
+                    return;
+                }
+                if (++attempts < YIELD_LIMIT) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends an action to the overflow. Must be called by the consumer.
+     * @param action int
+     * @param data Object
+     * @param dispatcher Dispatcher
+     */
+    private void addOverflow(final int action, final Object data, final Dispatcher dispatcher) {
+        overflow.addLast(new OverflowAction(action, data, dispatcher, epoch.get(), tail.get()));
+    }
+
+    /**
+     * Method clear.
+     * @see net.ggtools.grand.ui.event.EventQueue#clear()
+     */
+    @Override
+    void clear() {
+        epoch.incrementAndGet();
+    }
+
+    /**
+     * Method processActions.
+     * @param manager EventManager
+     * @see net.ggtools.grand.ui.event.EventQueue#processActions(EventManager)
+     */
+    @Override
+    void processActions(final EventManager manager) {
+        consumer = Thread.currentThread();
+        while (manager.isRunning()) {
+            final OverflowAction overflowAction = overflow.peekFirst();
+            if ((overflowAction != null) && (overflowAction.position <= head)) {
+                overflow.removeFirst();
+                if (overflowAction.epoch == epoch.get()) {
+                    manager.processAction(overflowAction.action, overflowAction.data,
+                            overflowAction.dispatcher);
+                }
+                continue;
+            }
+            final Slot slot = slots[(int) head & mask];
+            if (slot.sequence == head + 1) {
+                final int action = slot.action;
+                final Object data = slot.data;
+                final Dispatcher dispatcher = slot.dispatcher;
+                final long actionEpoch = slot.epoch;
+                slot.data = null;
+                slot.dispatcher = null;
+                slot.sequence = head + slots.length;
+                head++;
+                if (actionEpoch == epoch.get()) {
+                    manager.processAction(action, data, dispatcher);
+                }
+            } else {
+                waiting = true;
+                // Check again after announcing we are waiting, a producer may
+                // have published just before.
+                if (slot.sequence != head + 1) {
+                    LockSupport.park(this);
+                    if (Thread.interrupted() && LOG.isTraceEnabled()) {
+                        LOG.trace("Event queue watch interrupted");
+                    }
+                }
+                waiting = false;
+            }
+        }
+    }
+}
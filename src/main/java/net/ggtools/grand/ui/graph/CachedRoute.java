@@ -0,0 +1,76 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import java.awt.Shape;
+import java.awt.geom.Point2D;
+
+/**
+ * An edge or bus route read back from the persistent layout cache. It carries
+ * the same information than the {@link sf.jzgraph.dot.impl.DotRoute} it was
+ * created from, with the path already flattened.
+ *
+ * @author Christophe Labouisse
+ */
+public final class CachedRoute {
+    /**
+     * Field endPt.
+     */
+    private final Point2D endPt;
+
+    /**
+     * Field path.
+     */
+    private final Shape path;
+
+    /**
+     * Constructor for CachedRoute.
+     * @param path Shape
+     * @param endPt Point2D
+     */
+    public CachedRoute(final Shape path, final Point2D endPt) {
+        this.path = path;
+        this.endPt = endPt;
+    }
+
+    /**
+     * @return Returns the end point of the route, <code>null</code> if the
+     *         route ends on its last path point.
+     */
+    public Point2D getEndPt() {
+        return endPt;
+    }
+
+    /**
+     * @return Returns the path.
+     */
+    public Shape getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,399 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import sf.jzgraph.IDotGraph;
+import sf.jzgraph.IEdge;
+import sf.jzgraph.IGraph;
+import sf.jzgraph.IVertex;
+import sf.jzgraph.dot.impl.Dot;
+import sf.jzgraph.dot.impl.DotGraph;
+
+/**
+ * Lays out a graph component by component. The graph is split into its weakly
+ * connected components, each one is layed out by dot on a dedicated bounded
+ * pool and the results are packed in rows before being copied back into the
+ * original graph.
+ * <p>
+ * Every component is copied into its own {@link DotGraph} and layed out by its
+ * own {@link Dot} instance so the concurrent tasks share no jzgraph object; the
+ * original graph is only read while splitting and written while packing, both
+ * on the calling thread.
+ *
+ * @author Christophe Labouisse
+ */
+final class ComponentLayout {
+    /**
+     * A weakly connected component of the graph along with the vertices and
+     * edges of the original graph it has been created from.
+     */
+    private static final class Component {
+        /**
+         * Field graph.
+         */
+        private final IDotGraph graph;
+
+        /**
+         * Field sourceVertices.
+         */
+        private final List<IVertex> sourceVertices = new ArrayList<>();
+
+        /**
+         * Field vertices.
+         */
+        private final List<IVertex> vertices = new ArrayList<>();
+
+        /**
+         * Field sourceEdges.
+         */
+        private final List<IEdge> sourceEdges = new ArrayList<>();
+
+        /**
+         * Field edges.
+         */
+        private final List<IEdge> edges = new ArrayList<>();
+
+        /**
+         * Field bounds.
+         */
+        private Rectangle2D bounds;
+
+        /**
+         * Constructor for Component.
+         * @param name String
+         */
+        private Component(final String name) {
+            graph = new DotGraph(IGraph.GRAPH, name);
+        }
+
+        /**
+         * Computes the bounds of the layed out component.
+         */
+        private void computeBounds() {
+            for (final IVertex vertex : vertices) {
+                for (final String attr : LayoutCache.VERTEX_LAYOUT_ATTRS) {
+                    addBounds(vertex.getAttr(attr));
+                }
+            }
+            for (final IEdge edge : edges) {
+                for (final String attr : LayoutCache.EDGE_LAYOUT_ATTRS) {
+                    addBounds(edge.getAttr(attr));
+                }
+            }
+            if (bounds == null) {
+                bounds = new Rectangle2D.Double();
+            }
+        }
+
+        /**
+         * Adds the bounds of a layout attribute to the component's ones.
+         * @param value Object
+         */
+        private void addBounds(final Object value) {
+            final Rectangle2D valueBounds = LayoutGeometry.getBounds(value);
+            if (valueBounds == null) {
+                return;
+            }
+            if (bounds == null) {
+                bounds = (Rectangle2D) valueBounds.clone();
+            } else {
+                bounds.add(valueBounds);
+            }
+        }
+
+        /**
+         * Copies the component layout back into the original graph.
+         * @param dx double
+         * @param dy double
+         */
+        private void copyLayout(final double dx, final double dy) {
+            for (int i = 0; i < vertices.size(); i++) {
+                copyAttributes(vertices.get(i), sourceVertices.get(i),
+                        LayoutCache.VERTEX_LAYOUT_ATTRS, dx, dy);
+            }
+            for (int i = 0; i < edges.size(); i++) {
+                final IEdge edge = edges.get(i);
+                final IEdge sourceEdge = sourceEdges.get(i);
+                for (final String attr : LayoutCache.EDGE_LAYOUT_ATTRS) {
+                    if (edge.hasAttr(attr)) {
+                        sourceEdge.setAttr(attr, LayoutGeometry.translate(edge.getAttr(attr), dx, dy));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(ComponentLayout.class);
+
+    /**
+     * Space left between two packed components.
+     * (value is {@value #COMPONENT_GAP})
+     */
+    private static final double COMPONENT_GAP = 24;
+
+    /**
+     * Maximum number of components layed out at the same time.
+     */
+    private static final int LAYOUT_THREADS =
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Executor running the layout of the components. It is kept apart from the
+     * common fork-join pool so long dot runs cannot starve other users of it.
+     */
+    private static final ExecutorService COMPONENT_EXECUTOR =
+            Executors.newFixedThreadPool(LAYOUT_THREADS, r -> {
+                final Thread thread = new Thread(r, "Component layout");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Cancels the pending component layouts.
+     * @param layouts List&lt;Future&lt;?&gt;&gt;
+     */
+    private static void cancel(final List<Future<?>> layouts) {
+        for (final Future<?> layout : layouts) {
+            layout.cancel(true);
+        }
+    }
+
+    /**
+     * Copies some attributes between two vertices, translating the geometric
+     * ones.
+     * @param from IVertex
+     * @param to IVertex
+     * @param attrs String[]
+     * @param dx double
+     * @param dy double
+     */
+    private static void copyAttributes(final IVertex from, final IVertex to,
+            final String[] attrs, final double dx, final double dy) {
+        for (final String attr : attrs) {
+            if (from.hasAttr(attr)) {
+                to.setAttr(attr, LayoutGeometry.translate(from.getAttr(attr), dx, dy));
+            }
+        }
+    }
+
+    /**
+     * Field dotGraph.
+     */
+    private final IDotGraph dotGraph;
+
+    /**
+     * Constructor for ComponentLayout.
+     * @param dotGraph
+     *            a graph created by {@link DotGraphCreator}.
+     */
+    ComponentLayout(final IDotGraph dotGraph) {
+        this.dotGraph = dotGraph;
+    }
+
+    /**
+     * Lays out the graph. Graphs with a single component are directly handed
+     * to dot.
+     *
+     * @return <code>false</code> if the layout has been interrupted before
+     *         completion, the graph being then only partially layed out.
+     */
+    public boolean layout() {
+        final List<Component> components = split();
+        if (components.size() < 2) {
+            new Dot().layout(dotGraph, 0, -7);
+            return true;
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Laying out " + components.size() + " components");
+        }
+        final List<Future<?>> layouts = new ArrayList<>(components.size());
+        for (final Component component : components) {
+            layouts.add(COMPONENT_EXECUTOR.submit(() -> {
+                new Dot().layout(component.graph, 0, -7);
+                component.computeBounds();
+            }));
+        }
+        try {
+            for (final Future<?> layout : layouts) {
+                layout.get();
+            }
+        } catch (final InterruptedException e) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Component layout interrupted");
+            }
+            cancel(layouts);
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (final ExecutionException e) {
+            cancel(layouts);
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("Cannot lay out graph component", cause);
+        }
+        pack(components);
+        return true;
+    }
+
+    /**
+     * Finds the root of a vertex in the union-find forest, compressing the
+     * path on the way.
+     * @param parents Map&lt;IVertex,IVertex&gt;
+     * @param vertex IVertex
+     * @return IVertex
+     */
+    private IVertex findRoot(final Map<IVertex, IVertex> parents, final IVertex vertex) {
+        IVertex root = vertex;
+        while (parents.get(root) != root) {
+            root = parents.get(root);
+        }
+        IVertex current = vertex;
+        while (current != root) {
+            final IVertex next = parents.get(current);
+            parents.put(current, root);
+            current = next;
+        }
+        return root;
+    }
+
+    /**
+     * Packs the layed out components in rows, the largest first, and copies
+     * their layout into the original graph.
+     * @param components List&lt;Component&gt;
+     */
+    private void pack(final List<Component> components) {
+        double originX = Double.MAX_VALUE;
+        double originY = Double.MAX_VALUE;
+        double maxWidth = 0;
+        double totalArea = 0;
+        for (final Component component : components) {
+            final Rectangle2D bounds = component.bounds;
+            originX = Math.min(originX, bounds.getX());
+            originY = Math.min(originY, bounds.getY());
+            maxWidth = Math.max(maxWidth, bounds.getWidth());
+            totalArea += (bounds.getWidth() + COMPONENT_GAP) * (bounds.getHeight() + COMPONENT_GAP);
+        }
+        // Aim at a roughly square result without splitting the widest component.
+        final double rowWidth = Math.max(maxWidth, Math.sqrt(totalArea));
+
+        components.sort(Comparator.comparingDouble(
+                (Component component) -> component.bounds.getHeight()).reversed());
+        double x = originX;
+        double y = originY;
+        double rowHeight = 0;
+        for (final Component component : components) {
+            final Rectangle2D bounds = component.bounds;
+            if ((x > originX) && (x + bounds.getWidth() > originX + rowWidth)) {
+                x = originX;
+                y += rowHeight + COMPONENT_GAP;
+                rowHeight = 0;
+            }
+            component.copyLayout(x - bounds.getX(), y - bounds.getY());
+            x += bounds.getWidth() + COMPONENT_GAP;
+            rowHeight = Math.max(rowHeight, bounds.getHeight());
+        }
+    }
+
+    /**
+     * Splits the graph into its weakly connected components. Each component
+     * gets a new graph holding the attributes used by dot to compute the
+     * layout.
+     * @return List&lt;Component&gt;
+     */
+    private List<Component> split() {
+        final Map<IVertex, IVertex> parents = new HashMap<>();
+        for (final Object vertex : dotGraph.allVertices()) {
+            parents.put((IVertex) vertex, (IVertex) vertex);
+        }
+        for (final Object o : dotGraph.allEdges()) {
+            final IEdge edge = (IEdge) o;
+            final IVertex tailRoot = findRoot(parents, edge.getTail());
+            final IVertex headRoot = findRoot(parents, edge.getHead());
+            if (tailRoot != headRoot) {
+                parents.put(tailRoot, headRoot);
+            }
+        }
+
+        final Map<IVertex, Component> componentsByRoot = new HashMap<>();
+        final List<Component> components = new ArrayList<>();
+        final Map<IVertex, IVertex> vertexLUT = new HashMap<>();
+        for (final Object o : dotGraph.allVertices()) {
+            final IVertex vertex = (IVertex) o;
+            final Component component = componentsByRoot.computeIfAbsent(
+                    findRoot(parents, vertex), root -> {
+                        final Component newComponent = new Component(dotGraph.getName()
+                                + "#" + components.size());
+                        components.add(newComponent);
+                        return newComponent;
+                    });
+            final IVertex componentVertex =
+                    component.graph.newVertex(vertex.getName(), vertex.getData());
+            for (final String attr : LayoutCache.VERTEX_KEY_ATTRS) {
+                if (vertex.hasAttr(attr)) {
+                    componentVertex.setAttr(attr, vertex.getAttr(attr));
+                }
+            }
+            component.sourceVertices.add(vertex);
+            component.vertices.add(componentVertex);
+            vertexLUT.put(vertex, componentVertex);
+        }
+
+        for (final Object o : dotGraph.allEdges()) {
+            final IEdge edge = (IEdge) o;
+            final Component component =
+                    componentsByRoot.get(findRoot(parents, edge.getTail()));
+            component.sourceEdges.add(edge);
+            component.edges.add(component.graph.newEdge(vertexLUT.get(edge.getTail()),
+                    vertexLUT.get(edge.getHead()), edge.getName(), edge.getData()));
+        }
+        return components;
+    }
+}
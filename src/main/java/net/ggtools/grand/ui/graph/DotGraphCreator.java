@@ -43,13 +43,8 @@ import net.ggtools.grand.graph.Node;
 import net.ggtools.grand.graph.visit.LinkVisitor;
 import net.ggtools.grand.graph.visit.NodeVisitor;
 import net.ggtools.grand.ui.Application;
-import net.ggtools.grand.ui.GrandUiPrefStore;
-import net.ggtools.grand.ui.prefs.PreferenceKeys;
 
-import org.eclipse.draw2d.FigureUtilities;
 import org.eclipse.draw2d.geometry.Dimension;
-import org.eclipse.swt.graphics.Font;
-import org.eclipse.swt.widgets.Display;
 
 import sf.jzgraph.IDotGraph;
 import sf.jzgraph.IEdge;
@@ -86,6 +81,11 @@ public class DotGraphCreator
      */
     private final Map<String, IVertex> nameDimensions;
 
+    /**
+     * Field renderStyle.
+     */
+    private final RenderStyle renderStyle;
+
     /**
      * Field startNode.
      */
@@ -107,8 +107,23 @@ public class DotGraphCreator
      * @param useBusRouting boolean
      */
     public DotGraphCreator(final Graph graph, final boolean useBusRouting) {
+        this(graph, useBusRouting,
+                new RenderStyle(Application.getInstance().getPreferenceStore()));
+    }
+
+    /**
+     *
+     * @param graph Graph
+     * @param useBusRouting boolean
+     * @param renderStyle
+     *            the snapshot of the preferences to use for the nodes and
+     *            links.
+     */
+    public DotGraphCreator(final Graph graph, final boolean useBusRouting,
+            final RenderStyle renderStyle) {
         this.graph = graph;
         this.useBusRouting = useBusRouting;
+        this.renderStyle = renderStyle;
         nameDimensions = new HashMap<>();
         dotGraph = new DotGraph(IGraph.GRAPH, graph.getName());
         vertexLUT = new HashMap<>();
@@ -133,16 +148,15 @@ public class DotGraphCreator
         }
 
         // Update width and height in nodes.
-        Display.getDefault().syncExec(() -> {
-            final Font systemFont = Application.getInstance().getFont(Application.NODE_FONT);
-            for (final Entry<String, IVertex> entry : nameDimensions.entrySet()) {
-                final IVertex vertex = entry.getValue();
-
-                final Dimension dim = FigureUtilities.getTextExtents(entry.getKey(), systemFont);
-                vertex.setAttr(MINWIDTH_ATTR, Math.max(dim.width, 50));
-                vertex.setAttr(MINHEIGHT_ATTR, Math.max(dim.height, 25));
-            }
-        });
+        final Map<String, Dimension> extents = TextMetricsCache.getInstance()
+                .getTextExtents(Application.NODE_FONT, nameDimensions.keySet());
+        for (final Entry<String, IVertex> entry : nameDimensions.entrySet()) {
+            final IVertex vertex = entry.getValue();
+
+            final Dimension dim = extents.get(entry.getKey());
+            vertex.setAttr(MINWIDTH_ATTR, Math.max(dim.width, 50));
+            vertex.setAttr(MINHEIGHT_ATTR, Math.max(dim.height, 25));
+        }
 
         for (final Iterator<Node> iter = graph.getNodes(); iter.hasNext();) {
             final Node node = iter.next();
@@ -197,13 +211,7 @@ public class DotGraphCreator
         edge.setAttr(LINK_TASK_ATTR, link.getTaskName());
         edge.setAttr(LINK_PARAMETERS_ATTR, link.getParameterMap());
         edge.setAttr(LINK_SUBANT_DIRECTORIES, link.getDirectories());
-        final GrandUiPrefStore preferenceStore =
-                Application.getInstance().getPreferenceStore();
-        edge.setAttr(DRAW2DFGCOLOR_ATTR, preferenceStore
-                .getColor(PreferenceKeys.LINK_SUBANT_COLOR));
-        edge.setAttr(DRAW2DLINEWIDTH_ATTR, preferenceStore
-                .getInt(PreferenceKeys.LINK_SUBANT_LINEWIDTH));
-
+        setLinkStyle(edge, renderStyle.getSubantLinkStyle());
     }
 
     /**
@@ -246,17 +254,10 @@ public class DotGraphCreator
     private IEdge addLink(final Link link) {
         final IEdge edge = dotGraph.newEdge(vertexLUT.get(link.getStartNode().getName()),
                 vertexLUT.get(link.getEndNode().getName()), currentLinkName, link);
-        final GrandUiPrefStore preferenceStore = Application.getInstance().getPreferenceStore();
         if (link.hasAttributes(Link.ATTR_WEAK_LINK)) {
-            edge.setAttr(DRAW2DFGCOLOR_ATTR, preferenceStore
-                    .getColor(PreferenceKeys.LINK_WEAK_COLOR));
-            edge.setAttr(DRAW2DLINEWIDTH_ATTR, preferenceStore
-                    .getInt(PreferenceKeys.LINK_WEAK_LINEWIDTH));
+            setLinkStyle(edge, renderStyle.getWeakLinkStyle());
         } else {
-            edge.setAttr(DRAW2DFGCOLOR_ATTR, preferenceStore
-                    .getColor(PreferenceKeys.LINK_DEFAULT_COLOR));
-            edge.setAttr(DRAW2DLINEWIDTH_ATTR, preferenceStore
-                    .getInt(PreferenceKeys.LINK_DEFAULT_LINEWIDTH));
+            setLinkStyle(edge, renderStyle.getDefaultLinkStyle());
         }
         return edge;
     }
@@ -285,11 +286,8 @@ public class DotGraphCreator
         }
 
         if (useBusRouting) {
-            final GrandUiPrefStore preferenceStore = Application.getInstance().getPreferenceStore();
-            vertex.setAttr("inthreshold", preferenceStore
-                    .getInt(PreferenceKeys.GRAPH_BUS_IN_THRESHOLD));
-            vertex.setAttr("outthreshold", preferenceStore
-                    .getInt(PreferenceKeys.GRAPH_BUS_OUT_THRESHOLD));
+            vertex.setAttr("inthreshold", renderStyle.getBusInThreshold());
+            vertex.setAttr("outthreshold", renderStyle.getBusOutThreshold());
         }
 
         vertexLUT.put(name, vertex);
@@ -297,19 +295,26 @@ public class DotGraphCreator
         return vertex;
     }
 
+    /**
+     * @param edge IEdge
+     * @param linkStyle LinkStyle
+     */
+    private void setLinkStyle(final IEdge edge, final RenderStyle.LinkStyle linkStyle) {
+        edge.setAttr(DRAW2DFGCOLOR_ATTR, linkStyle.getColor());
+        edge.setAttr(DRAW2DLINEWIDTH_ATTR, linkStyle.getLineWidth());
+    }
+
     /**
      * @param vertex IVertex
      * @param nodeType String
      */
     private void setVertexPreferences(final IVertex vertex,
             final String nodeType) {
-        final GrandUiPrefStore preferenceStore =
-                Application.getInstance().getPreferenceStore();
-        final String keyPrefix = PreferenceKeys.NODE_PREFIX + nodeType;
-        vertex.setAttr(SHAPE_ATTR, preferenceStore.getString(keyPrefix + ".shape"));
-        vertex.setAttr(DRAW2DFGCOLOR_ATTR, preferenceStore.getColor(keyPrefix + ".fgcolor"));
-        vertex.setAttr(DRAW2DFILLCOLOR_ATTR, preferenceStore.getColor(keyPrefix + ".fillcolor"));
-        vertex.setAttr(DRAW2DLINEWIDTH_ATTR, preferenceStore.getInt(keyPrefix + ".linewidth"));
+        final RenderStyle.NodeStyle nodeStyle = renderStyle.getNodeStyle(nodeType);
+        vertex.setAttr(SHAPE_ATTR, nodeStyle.getShape());
+        vertex.setAttr(DRAW2DFGCOLOR_ATTR, nodeStyle.getFgColor());
+        vertex.setAttr(DRAW2DFILLCOLOR_ATTR, nodeStyle.getFillColor());
+        vertex.setAttr(DRAW2DLINEWIDTH_ATTR, nodeStyle.getLineWidth());
     }
 
 }
@@ -114,6 +114,23 @@ public class FilterChainModel implements GraphProducer {
         }
     }
 
+    /**
+     * Replaces the filters of the chain, e.g.: to restore a previous state.
+     *
+     * @param filters
+     *            the new filters, in chain order.
+     */
+    public final void setFilters(final List<GraphFilter> filters) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Setting " + filters.size() + " filters");
+        }
+        filterChain.clearFilters();
+        for (final GraphFilter filter : filters) {
+            filterChain.addFilterLast(filter);
+        }
+        filterGraph();
+    }
+
     /**
      * @return List&lt;GraphFilter&gt;
      */
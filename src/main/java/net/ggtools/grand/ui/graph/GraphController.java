@@ -30,10 +30,20 @@ package net.ggtools.grand.ui.graph;
 
 import java.io.File;
 import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.ggtools.grand.ant.AntTargetNode;
 import net.ggtools.grand.exceptions.GrandException;
@@ -84,6 +94,31 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      */
     private static final Log LOG = LogFactory.getLog(GraphController.class);
 
+    /**
+     * Maximum number of layouts running at the same time.
+     * (value is {@value #LAYOUT_THREADS})
+     */
+    private static final int LAYOUT_THREADS = 2;
+
+    /**
+     * Executor running the dot layouts. Abandoned layouts cannot be
+     * interrupted and keep their thread until they finish: the pool is
+     * bounded so new layouts are queued rather than piling up dot runs, and
+     * the abandoned ones still store their result in the {@link LayoutCache}.
+     */
+    private static final ExecutorService LAYOUT_EXECUTOR =
+            Executors.newFixedThreadPool(LAYOUT_THREADS, r -> {
+                final Thread thread = new Thread(r, "Graph layout");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Delay in milliseconds between two checks of a running layout.
+     * (value is {@value #LAYOUT_POLL_INTERVAL})
+     */
+    private static final long LAYOUT_POLL_INTERVAL = 100;
+
     // FIXME ok that's bad, it'll probably have to go to the Prefs API.
     /**
      * Field printMode.
@@ -146,6 +181,12 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      */
     private EventManager graphEventManager;
 
+    /**
+     * Incremented each time a new graph is rendered, used to detect that a
+     * running layout has been superseded.
+     */
+    private final AtomicInteger layoutGeneration = new AtomicInteger();
+
     /**
      * Field model.
      */
@@ -161,6 +202,22 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
      */
     private Dispatcher parameterChangedEvent;
 
+    /**
+     * Tells if the last graph was layed out component by component.
+     */
+    private boolean previousComponentLayout;
+
+    /**
+     * Last layed out graph, used to lay out the next one incrementally.
+     * <code>null</code> when the last graph was layed out with bus routing.
+     */
+    private IDotGraph previousDotGraph;
+
+    /**
+     * Snapshot of the preferences used to render the graph.
+     */
+    private volatile RenderStyle renderStyle;
+
     /**
      * Field renderer.
      */
@@ -200,7 +257,7 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
 
         graphEventManager = new EventManager("Graph Event");
         try {
-            selectionChangedDispatcher = graphEventManager.createDispatcher(GraphListener.class
+            selectionChangedDispatcher = graphEventManager.createCoalescingDispatcher(GraphListener.class
                     .getDeclaredMethod("selectionChanged", Collection.class));
             parameterChangedEvent = graphEventManager.createDispatcher(GraphListener.class
                     .getDeclaredMethod("parameterChanged", GraphController.class));
@@ -212,6 +269,8 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
         clearFiltersOnNextLoad = true; // Conservative.
         final GrandUiPrefStore preferenceStore = Application.getInstance().getPreferenceStore();
         busRoutingEnabled = preferenceStore.getBoolean(PreferenceKeys.GRAPH_BUS_ENABLED_DEFAULT);
+        renderStyle = new RenderStyle(preferenceStore);
+        nodeContentProvider.setRenderStyle(renderStyle);
         preferenceStore.addPropertyChangeListener(this);
     }
 
@@ -221,18 +280,27 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
     public final void addFilter(final GraphFilter filter) {
         final IProgressMonitor progressMonitor = defaultProgressMonitor;
 
+        final LoadMetrics metrics = newMetrics("Add filter");
+
         try {
             ModalContext.run(monitor -> {
                 LOG.info("Adding filter " + filter);
                 progressMonitor.beginTask("Adding filter", 4);
+                final List<GraphFilter> previousFilters =
+                        new ArrayList<>(filterChain.getFilterList());
+                final LoadMetrics.PhaseTimer filterTimer = metrics.startPhase(LoadMetrics.FILTER);
                 filterChain.addFilterLast(filter);
+                filterTimer.stop();
                 progressMonitor.worked(1);
-                renderFilteredGraph(progressMonitor);
+                if (!renderFilteredGraph(progressMonitor, metrics)) {
+                    restoreFilters(previousFilters);
+                }
             }, true, progressMonitor, Display.getCurrent());
         } catch (final InvocationTargetException | InterruptedException e) {
             reportError("Cannot add filter", e);
         } finally {
             progressMonitor.done();
+            PipelineMetrics.getInstance().record(metrics);
         }
     }
 
@@ -253,18 +321,27 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
     public final void clearFilters() {
         final IProgressMonitor progressMonitor = defaultProgressMonitor;
 
+        final LoadMetrics metrics = newMetrics("Clear filters");
+
         try {
             ModalContext.run(monitor -> {
                 LOG.info("Clearing filters");
                 progressMonitor.beginTask("Clearing filters", 4);
+                final List<GraphFilter> previousFilters =
+                        new ArrayList<>(filterChain.getFilterList());
+                final LoadMetrics.PhaseTimer filterTimer = metrics.startPhase(LoadMetrics.FILTER);
                 filterChain.clearFilters();
+                filterTimer.stop();
                 progressMonitor.worked(1);
-                renderFilteredGraph(progressMonitor);
+                if (!renderFilteredGraph(progressMonitor, metrics)) {
+                    restoreFilters(previousFilters);
+                }
             }, true, progressMonitor, Display.getCurrent());
         } catch (final InvocationTargetException | InterruptedException e) {
             reportError("Cannot clear filters", e);
         } finally {
             progressMonitor.done();
+            PipelineMetrics.getInstance().record(metrics);
         }
 
     }
@@ -280,7 +357,7 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
             }
             selectedNodes.clear();
             displayer.setSourceText("");
-            selectionChangedDispatcher.dispatch(selectedNodes);
+            fireSelectionChanged();
         }
     }
 
@@ -294,7 +371,7 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
         if (node.isSelected()) {
             selectedNodes.remove(node);
             node.setSelected(false);
-            selectionChangedDispatcher.dispatch(selectedNodes);
+            fireSelectionChanged();
         }
     }
 
@@ -312,9 +389,22 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
             }
             busRoutingEnabled = enabled;
             parameterChangedEvent.dispatch(this);
-            progressMonitor.beginTask("Rerouting graph", 3);
-            renderFilteredGraph(progressMonitor);
-            progressMonitor.done();
+            final LoadMetrics metrics = newMetrics("Reroute");
+            try {
+                ModalContext.run(monitor -> {
+                    progressMonitor.beginTask("Rerouting graph", 3);
+                    if (!renderFilteredGraph(progressMonitor, metrics)) {
+                        // Keep the setting in line with the graph on screen.
+                        busRoutingEnabled = !enabled;
+                        parameterChangedEvent.dispatch(this);
+                    }
+                }, true, progressMonitor, Display.getCurrent());
+            } catch (final InvocationTargetException | InterruptedException e) {
+                reportError("Cannot reroute graph", e);
+            } finally {
+                progressMonitor.done();
+                PipelineMetrics.getInstance().record(metrics);
+            }
         }
     }
 
@@ -421,16 +511,19 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
 
         progressMonitor.beginTask("Opening new graph", 5);
         clearFiltersOnNextLoad = true;
+        final LoadMetrics metrics = new LoadMetrics("Open", file.getAbsolutePath());
 
         try {
             progressMonitor.subTask("Loading ant file");
+            final LoadMetrics.PhaseTimer parseTimer = metrics.startPhase(LoadMetrics.PARSE);
             model.openFile(file, properties);
+            parseTimer.stop();
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Model loaded graph");
             }
             progressMonitor.worked(1);
 
-            filterAndRenderGraph(progressMonitor);
+            filterAndRenderGraph(progressMonitor, metrics);
             if (LOG.isInfoEnabled()) {
                 LOG.info("Graph loaded & rendered");
             }
@@ -440,6 +533,7 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
             stopController();
         } finally {
             progressMonitor.done();
+            PipelineMetrics.getInstance().record(metrics);
         }
     }
 
@@ -487,11 +581,32 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
         if (LOG.isDebugEnabled()) {
             LOG.debug("Get PropertyChangeEvent " + event.getProperty());
         }
-        if (event.getProperty().startsWith(PreferenceKeys.GRAPH_PREFIX)) {
+        if (event.getProperty().startsWith(PreferenceKeys.GRAPH_RENDER_PREFIX)) {
+            if (figure != null) {
+                applyRenderPreferences(figure);
+            }
+        } else if (event.getProperty().startsWith(PreferenceKeys.GRAPH_PREFIX)
+                && !PreferenceKeys.GRAPH_LAYOUT_TIMEOUT.equals(event.getProperty())) {
+            renderStyle = new RenderStyle(Application.getInstance().getPreferenceStore());
             refreshGraph();
         }
     }
 
+    /**
+     * Sets the zoom below which the graph is drawn with simplified figures
+     * and the size of the tile cache from the preferences.
+     *
+     * @param graphFigure
+     *            the figure to update.
+     */
+    private void applyRenderPreferences(final Draw2dGraph graphFigure) {
+        final GrandUiPrefStore preferenceStore = Application.getInstance().getPreferenceStore();
+        graphFigure.setDetailZoomThreshold(
+                preferenceStore.getInt(PreferenceKeys.GRAPH_DETAIL_ZOOM) / 100.0f);
+        graphFigure.setTileCacheSize(
+                preferenceStore.getInt(PreferenceKeys.GRAPH_TILE_CACHE) * 1024L * 1024L);
+    }
+
     /**
      * Refreshing (i.e.: rerender) the current graph.
      */
@@ -502,18 +617,24 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
         if (LOG.isInfoEnabled()) {
             LOG.info("Refreshing current graph");
         }
-        progressMonitor.beginTask("Refreshing graph", 3);
         clearFiltersOnNextLoad = false;
+        final LoadMetrics metrics = newMetrics("Refresh");
 
         try {
-            renderFilteredGraph(progressMonitor);
-            if (LOG.isInfoEnabled()) {
-                LOG.info("Graph refreshed");
-            }
+            ModalContext.run(monitor -> {
+                progressMonitor.beginTask("Refreshing graph", 3);
+                renderFilteredGraph(progressMonitor, metrics);
+                if (LOG.isInfoEnabled()) {
+                    LOG.info("Graph refreshed");
+                }
+            }, true, progressMonitor, Display.getCurrent());
+        } catch (final InvocationTargetException | InterruptedException e) {
+            reportError("Cannot refresh graph", e);
         } catch (final BuildException e) {
             reportError("Cannot open graph", e);
         } finally {
             progressMonitor.done();
+            PipelineMetrics.getInstance().record(metrics);
         }
     }
 
@@ -537,15 +658,18 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
         }
         progressMonitor.beginTask("Reloading graph", 5);
         clearFiltersOnNextLoad = false;
+        final LoadMetrics metrics = newMetrics("Reload");
 
         try {
+            final LoadMetrics.PhaseTimer parseTimer = metrics.startPhase(LoadMetrics.PARSE);
             model.reload(properties);
+            parseTimer.stop();
             if (LOG.isDebugEnabled()) {
                 LOG.debug("Model reloaded graph");
             }
             progressMonitor.worked(1);
 
-            filterAndRenderGraph(progressMonitor);
+            filterAndRenderGraph(progressMonitor, metrics);
             if (LOG.isInfoEnabled()) {
                 LOG.info("Graph reloaded");
             }
@@ -557,6 +681,7 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
             reportError("Cannot open graph", e);
         } finally {
             progressMonitor.done();
+            PipelineMetrics.getInstance().record(metrics);
         }
     }
 
@@ -586,7 +711,7 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
             selectedNodes.add(node);
             node.setSelected(true);
             displayer.setRichSource(((AntTargetNode) node.getVertex().getData()).getRichSource());
-            selectionChangedDispatcher.dispatch(selectedNodes);
+            fireSelectionChanged();
         }
     }
 
@@ -608,57 +733,138 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
         defaultProgressMonitor = progressMonitor;
     }
 
+    /**
+     * Notifies the listeners of a selection change with a snapshot of the
+     * selected nodes. Bursts of changes are delivered once.
+     */
+    private void fireSelectionChanged() {
+        selectionChangedDispatcher.dispatch(
+                Collections.unmodifiableList(new ArrayList<>(selectedNodes)));
+    }
+
     /**
      * Filter the current graph of the model and render it.
      * @param progressMonitor IProgressMonitor
+     * @param metrics the metrics of the current run.
      */
-    private void filterAndRenderGraph(final IProgressMonitor progressMonitor) {
+    private void filterAndRenderGraph(final IProgressMonitor progressMonitor,
+            final LoadMetrics metrics) {
         progressMonitor.subTask("Filtering graph");
+        final LoadMetrics.PhaseTimer filterTimer = metrics.startPhase(LoadMetrics.FILTER);
         if (clearFiltersOnNextLoad) {
             filterChain.clearFilters();
         }
         filterChain.filterGraph();
+        filterTimer.stop();
         if (LOG.isDebugEnabled()) {
             LOG.debug("Filtering done");
         }
         progressMonitor.worked(1);
 
-        renderFilteredGraph(progressMonitor);
+        renderFilteredGraph(progressMonitor, metrics);
+    }
+
+    /**
+     * Creates the metrics for a run of the pipeline on the current file.
+     *
+     * @param operation String
+     * @return LoadMetrics
+     */
+    private LoadMetrics newMetrics(final String operation) {
+        final File file = model.getLastLoadedFile();
+        return new LoadMetrics(operation, (file == null) ? null : file.getAbsolutePath());
     }
 
     /**
      * Render the currently load/filtered graph. This method increase the
-     * progress monitor by 3.
+     * progress monitor by 3. When the graph is a subset of the previous one,
+     * typically after adding a filter, the previous layout is reused. If the
+     * layout is cancelled, times out or is superseded by a newer rendering,
+     * the current graph is left on screen.
      * @param progressMonitor IProgressMonitor
+     * @param metrics the metrics of the current run.
+     * @return <code>false</code> if the layout has been cancelled or has timed
+     *         out, the caller should then restore the parameters matching the
+     *         graph on screen. A superseded rendering returns
+     *         <code>true</code> as the newer one takes care of the display.
      */
-    private void renderFilteredGraph(final IProgressMonitor progressMonitor) {
+    private boolean renderFilteredGraph(final IProgressMonitor progressMonitor,
+            final LoadMetrics metrics) {
+        final int generation = layoutGeneration.incrementAndGet();
         if (LOG.isDebugEnabled()) {
             LOG.debug("Creating dot graph");
         }
         progressMonitor.subTask("Laying out graph");
-        graph = filterChain.getGraph();
-        nodeContentProvider.setGraph(graph);
+        final Graph filteredGraph = filterChain.getGraph();
+        final RenderStyle style = renderStyle;
+        final LoadMetrics.PhaseTimer dotGraphTimer = metrics.startPhase(LoadMetrics.DOT_GRAPH);
         final DotGraphCreator creator =
-                new DotGraphCreator(graph, busRoutingEnabled);
+                new DotGraphCreator(filteredGraph, busRoutingEnabled, style);
         final IDotGraph dotGraph = creator.getGraph();
+        dotGraphTimer.stop();
+        metrics.setGraphSize(dotGraph.allVertices().size(), dotGraph.allEdges().size());
         progressMonitor.worked(1);
 
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("Laying out graph");
+        final boolean componentLayout = Application.getInstance().getPreferenceStore()
+                .getBoolean(PreferenceKeys.GRAPH_LAYOUT_COMPONENTS);
+        final LayoutCache layoutCache = LayoutCache.getInstance();
+        final String layoutKey =
+                layoutCache.computeKey(dotGraph, busRoutingEnabled, componentLayout);
+        final IDotGraph previous = previousDotGraph;
+        final LoadMetrics.PhaseTimer reuseTimer = metrics.startPhase(LoadMetrics.LAYOUT_REUSE);
+        if (!busRoutingEnabled && (previous != null)
+                && new IncrementalLayout(previous, previousComponentLayout)
+                        .layout(dotGraph, componentLayout)) {
+            reuseTimer.stop();
+            metrics.setLayoutSource("incremental");
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Graph layed out incrementally");
+            }
+        } else if (layoutCache.restore(layoutKey, dotGraph)) {
+            reuseTimer.stop();
+            metrics.setLayoutSource("cache");
+        } else {
+            reuseTimer.stop();
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Laying out graph");
+            }
+            metrics.setLayoutSource(componentLayout ? "components" : "dot");
+            if (!layoutGraph(dotGraph, layoutKey, componentLayout, progressMonitor, generation,
+                    metrics)) {
+                return generation != layoutGeneration.get();
+            }
         }
-        final Dot app = new Dot();
-        app.layout(dotGraph, 0, -7);
         progressMonitor.worked(1);
 
+        if (generation != layoutGeneration.get()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Discarding superseded layout");
+            }
+            return true;
+        }
+        graph = filteredGraph;
+        previousDotGraph = busRoutingEnabled ? null : dotGraph;
+        previousComponentLayout = componentLayout;
+        nodeContentProvider.setRenderStyle(style);
+        nodeContentProvider.setGraph(graph);
+
         progressMonitor.subTask("Rendering graph");
         Display.getDefault().syncExec(() -> {
+            final LoadMetrics.PhaseTimer renderTimer = metrics.startPhase(LoadMetrics.RENDER);
             if (figure == null) {
                 figure = renderer.render(dotGraph);
+                applyRenderPreferences(figure);
             } else {
                 renderer.render(figure, dotGraph);
+                // The figures of the nodes still displayed are reused.
+                if (selectedNodes.removeIf(node -> node.getParent() != figure)) {
+                    fireSelectionChanged();
+                }
             }
+            renderTimer.stop();
         });
         figure.setSelectionManager(this);
+        metrics.setCompleted();
         progressMonitor.worked(1);
 
         String graphName = graph.getName();
@@ -667,6 +873,108 @@ public class GraphController implements DotGraphAttributes, SelectionManager,
         }
         getDisplayer().setGraph(figure, graphName,
                 model.getLastLoadedFile().getAbsolutePath());
+        return true;
+    }
+
+    /**
+     * Runs the dot layout in a background thread, waiting for it to complete.
+     * The layout is abandoned if the progress monitor is cancelled, if the
+     * timeout set in the preferences expires or if a newer layout is started.
+     * Completed layouts, abandoned or not, are stored in the layout cache but
+     * only the ones actually used are recorded in the metrics.
+     *
+     * @param dotGraph
+     *            the graph to lay out.
+     * @param layoutKey
+     *            the key of the graph in the layout cache.
+     * @param componentLayout
+     *            <code>true</code> to lay out each connected component
+     *            separately.
+     * @param progressMonitor
+     *            the monitor to check for cancellation.
+     * @param generation
+     *            the rendering generation this layout belongs to.
+     * @param metrics
+     *            the metrics of the current run.
+     * @return <code>true</code> if the layout completed.
+     */
+    private boolean layoutGraph(final IDotGraph dotGraph, final String layoutKey,
+            final boolean componentLayout, final IProgressMonitor progressMonitor,
+            final int generation, final LoadMetrics metrics) {
+        final int timeout = Application.getInstance().getPreferenceStore()
+                .getInt(PreferenceKeys.GRAPH_LAYOUT_TIMEOUT);
+        final long deadline = (timeout > 0)
+                ? System.currentTimeMillis() + timeout * 1000L : Long.MAX_VALUE;
+        final Future<LoadMetrics.PhaseTimer> layout = LAYOUT_EXECUTOR.submit(() -> {
+            final LoadMetrics.PhaseTimer layoutTimer = metrics.startPhase(LoadMetrics.LAYOUT);
+            boolean completed = true;
+            if (componentLayout) {
+                completed = new ComponentLayout(dotGraph).layout();
+            } else {
+                final Dot app = new Dot();
+                app.layout(dotGraph, 0, -7);
+            }
+            layoutTimer.end();
+            if (completed) {
+                LayoutCache.getInstance().store(layoutKey, dotGraph);
+            }
+            return layoutTimer;
+        });
+
+        try {
+            while (true) {
+                try {
+                    layout.get(LAYOUT_POLL_INTERVAL, TimeUnit.MILLISECONDS).record();
+                    return true;
+                } catch (final TimeoutException e) {
+                    if (progressMonitor.isCanceled()) {
+                        LOG.info("Graph layout cancelled");
+                        break;
+                    }
+                    if (generation != layoutGeneration.get()) {
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug("Graph layout superseded");
+                        }
+                        break;
+                    }
+                    if (System.currentTimeMillis() > deadline) {
+                        reportError("Cannot lay out graph", new TimeoutException(
+                                "Graph layout took more than " + timeout + " seconds"));
+                        break;
+                    }
+                }
+            }
+        } catch (final InterruptedException e) {
+            LOG.info("Graph layout interrupted");
+            Thread.currentThread().interrupt();
+        } catch (final ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException("Cannot lay out graph", cause);
+        }
+
+        layout.cancel(true);
+        return false;
+    }
+
+    /**
+     * Restores the filters after an abandoned rendering so they match the
+     * graph on screen and notifies the listeners.
+     *
+     * @param filters
+     *            the filters used by the displayed graph.
+     */
+    private void restoreFilters(final List<GraphFilter> filters) {
+        if (LOG.isInfoEnabled()) {
+            LOG.info("Rendering abandoned, restoring " + filters.size() + " filters");
+        }
+        filterChain.setFilters(filters);
+        parameterChangedEvent.dispatch(this);
     }
 
     /**
@@ -33,9 +33,6 @@ import java.util.List;
 
 import net.ggtools.grand.graph.Graph;
 import net.ggtools.grand.graph.Node;
-import net.ggtools.grand.ui.Application;
-import net.ggtools.grand.ui.GrandUiPrefStore;
-import net.ggtools.grand.ui.prefs.PreferenceKeys;
 
 import org.eclipse.jface.viewers.IColorProvider;
 import org.eclipse.jface.viewers.ILabelProvider;
@@ -60,6 +57,11 @@ public class GraphNodeContentProvider implements IStructuredContentProvider,
      */
     private Graph graph;
 
+    /**
+     * Field renderStyle.
+     */
+    private RenderStyle renderStyle;
+
     /**
      *
      */
@@ -92,20 +94,17 @@ public class GraphNodeContentProvider implements IStructuredContentProvider,
     public final Color getBackground(final Object element) {
         if (element instanceof Node) {
             final Node node = (Node) element;
-            final GrandUiPrefStore preferenceStore =
-                    Application.getInstance().getPreferenceStore();
             if (node.equals(graph.getStartNode())) {
-                return preferenceStore.getColor(PreferenceKeys.NODE_PREFIX + "start.fillcolor");
+                return renderStyle.getNodeStyle("start").getFillColor();
             }
             if (node.hasAttributes(Node.ATTR_MISSING_NODE)) {
-                return preferenceStore.getColor(PreferenceKeys.NODE_PREFIX
-                        + "missing.fillcolor");
+                return renderStyle.getNodeStyle("missing").getFillColor();
             }
             if (node.hasAttributes(Node.ATTR_MAIN_NODE)) {
-                return preferenceStore.getColor(PreferenceKeys.NODE_PREFIX + "main.fillcolor");
+                return renderStyle.getNodeStyle("main").getFillColor();
             }
 
-            return preferenceStore.getColor(PreferenceKeys.NODE_PREFIX + "default.fillcolor");
+            return renderStyle.getNodeStyle("default").getFillColor();
         }
 
         return null;
@@ -139,19 +138,17 @@ public class GraphNodeContentProvider implements IStructuredContentProvider,
     public final Color getForeground(final Object element) {
         if (element instanceof Node) {
             final Node node = (Node) element;
-            final GrandUiPrefStore preferenceStore =
-                    Application.getInstance().getPreferenceStore();
             if (node.equals(graph.getStartNode())) {
-                return preferenceStore.getColor(PreferenceKeys.NODE_PREFIX + "start.fgcolor");
+                return renderStyle.getNodeStyle("start").getFgColor();
             }
             if (node.hasAttributes(Node.ATTR_MISSING_NODE)) {
-                return preferenceStore.getColor(PreferenceKeys.NODE_PREFIX + "missing.fgcolor");
+                return renderStyle.getNodeStyle("missing").getFgColor();
             }
             if (node.hasAttributes(Node.ATTR_MAIN_NODE)) {
-                return preferenceStore.getColor(PreferenceKeys.NODE_PREFIX + "main.fgcolor");
+                return renderStyle.getNodeStyle("main").getFgColor();
             }
 
-            return preferenceStore.getColor(PreferenceKeys.NODE_PREFIX + "default.fgcolor");
+            return renderStyle.getNodeStyle("default").getFgColor();
         }
 
         return null;
@@ -222,6 +219,13 @@ public class GraphNodeContentProvider implements IStructuredContentProvider,
         // TODO auto-generated method stub
     }
 
+    /**
+     * @param renderStyle RenderStyle
+     */
+    final void setRenderStyle(final RenderStyle renderStyle) {
+        this.renderStyle = renderStyle;
+    }
+
     /**
      * @param graph Graph
      */
@@ -0,0 +1,305 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.DoubleUnaryOperator;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import sf.jzgraph.IDotGraph;
+import sf.jzgraph.IEdge;
+import sf.jzgraph.IVertex;
+
+/**
+ * Lays out a graph by reusing the layout of a previous graph it has been
+ * obtained from by removing vertices and edges. The surviving vertices and
+ * edges keep their relative positions and the ranks left empty by the removed
+ * vertices are collapsed.
+ * <p>
+ * The layout is refused, and a full dot layout should be done instead, as soon
+ * as the new graph is not a strict subset of the previous one, if the vertices
+ * have changed size or shape, if too many vertices have been removed for the
+ * result to look good or if the previous graph was not layed out in the same
+ * mode (component by component or as a whole). An identical graph, e.g.: after
+ * a style change, is refused as well so it goes through the layout cache.
+ *
+ * @author Christophe Labouisse
+ */
+final class IncrementalLayout {
+    /**
+     * Vertical mapping collapsing the gaps between the surviving vertices to
+     * the smallest gap found in the previous layout, i.e.: the rank
+     * separation.
+     */
+    private static final class Compaction implements DoubleUnaryOperator {
+        /**
+         * Bottom of each gap.
+         */
+        private final double[] gapStarts;
+
+        /**
+         * Height of each gap.
+         */
+        private final double[] gapHeights;
+
+        /**
+         * Height removed from each gap.
+         */
+        private final double[] reductions;
+
+        /**
+         * Constructor for Compaction.
+         * @param previousBands List&lt;double[]&gt;
+         * @param bands List&lt;double[]&gt;
+         */
+        private Compaction(final List<double[]> previousBands, final List<double[]> bands) {
+            double minGap = Double.MAX_VALUE;
+            for (int i = 1; i < previousBands.size(); i++) {
+                minGap = Math.min(minGap, previousBands.get(i)[0] - previousBands.get(i - 1)[1]);
+            }
+            final int gapCount = Math.max(0, bands.size() - 1);
+            gapStarts = new double[gapCount];
+            gapHeights = new double[gapCount];
+            reductions = new double[gapCount];
+            for (int i = 0; i < gapCount; i++) {
+                gapStarts[i] = bands.get(i)[1];
+                gapHeights[i] = bands.get(i + 1)[0] - gapStarts[i];
+                reductions[i] = Math.max(0, gapHeights[i] - minGap);
+            }
+        }
+
+        /**
+         * Maps a vertical coordinate.
+         * @param y double
+         * @return double
+         * @see java.util.function.DoubleUnaryOperator#applyAsDouble(double)
+         */
+        public double applyAsDouble(final double y) {
+            double shift = 0;
+            for (int i = 0; (i < gapStarts.length) && (y > gapStarts[i]); i++) {
+                if (y >= gapStarts[i] + gapHeights[i]) {
+                    shift += reductions[i];
+                } else {
+                    shift += reductions[i] * (y - gapStarts[i]) / gapHeights[i];
+                }
+            }
+            return y - shift;
+        }
+    }
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(IncrementalLayout.class);
+
+    /**
+     * Minimal ratio of surviving vertices for the previous layout to be
+     * reused.
+     * (value is {@value #MIN_SURVIVOR_RATIO})
+     */
+    private static final double MIN_SURVIVOR_RATIO = 0.5;
+
+    /**
+     * Builds the description of an edge ignoring its name which depends on
+     * the other edges starting from the same vertex.
+     * @param edge IEdge
+     * @return String
+     */
+    private static String describeEdge(final IEdge edge) {
+        return edge.getTail().getName() + '\u0000' + edge.getHead().getName();
+    }
+
+    /**
+     * Returns the vertical extents of a set of vertices, overlapping extents
+     * merged and sorted from top to bottom.
+     * @param vertices Collection&lt;?&gt;
+     * @return List&lt;double[]&gt;
+     */
+    private static List<double[]> getBands(final Collection<?> vertices) {
+        final List<double[]> extents = new ArrayList<>();
+        for (final Object vertex : vertices) {
+            final Object bounds = ((IVertex) vertex).getAttr(DotGraphAttributes._BOUNDS_ATTR);
+            if (bounds instanceof Rectangle2D) {
+                final Rectangle2D rect = (Rectangle2D) bounds;
+                extents.add(new double[]{rect.getMinY(), rect.getMaxY()});
+            }
+        }
+        extents.sort((a, b) -> Double.compare(a[0], b[0]));
+
+        final List<double[]> bands = new ArrayList<>();
+        for (final double[] extent : extents) {
+            final double[] last = bands.isEmpty() ? null : bands.get(bands.size() - 1);
+            if ((last != null) && (extent[0] <= last[1])) {
+                last[1] = Math.max(last[1], extent[1]);
+            } else {
+                bands.add(extent);
+            }
+        }
+        return bands;
+    }
+
+    /**
+     * Field previousGraph.
+     */
+    private final IDotGraph previousGraph;
+
+    /**
+     * Field previousComponentLayout.
+     */
+    private final boolean previousComponentLayout;
+
+    /**
+     * Constructor for IncrementalLayout.
+     * @param previousGraph
+     *            the last layed out graph.
+     * @param previousComponentLayout
+     *            <code>true</code> if the last graph was layed out component
+     *            by component.
+     */
+    IncrementalLayout(final IDotGraph previousGraph, final boolean previousComponentLayout) {
+        this.previousGraph = previousGraph;
+        this.previousComponentLayout = previousComponentLayout;
+    }
+
+    /**
+     * Lays out a graph from the previous one.
+     *
+     * @param dotGraph
+     *            a graph created by {@link DotGraphCreator}, not layed out yet.
+     * @param componentLayout
+     *            <code>true</code> if the graph is to be layed out component by
+     *            component.
+     * @return <code>true</code> if the graph has been layed out,
+     *         <code>false</code> if a full layout is required.
+     */
+    public boolean layout(final IDotGraph dotGraph, final boolean componentLayout) {
+        if (componentLayout != previousComponentLayout) {
+            return false;
+        }
+        final Collection<?> vertices = dotGraph.allVertices();
+        final int previousSize = previousGraph.allVertices().size();
+        // Every vertex must come from the previous graph so at least one of
+        // them has been removed when the new graph is smaller.
+        if (vertices.isEmpty() || (vertices.size() >= previousSize)
+                || (vertices.size() < previousSize * MIN_SURVIVOR_RATIO)) {
+            return false;
+        }
+
+        final Map<String, IVertex> previousVertices = new HashMap<>();
+        for (final Object vertex : previousGraph.allVertices()) {
+            previousVertices.put(((IVertex) vertex).getName(), (IVertex) vertex);
+        }
+        final List<IVertex> sources = new ArrayList<>(vertices.size());
+        for (final Object o : vertices) {
+            final IVertex vertex = (IVertex) o;
+            final IVertex previous = previousVertices.get(vertex.getName());
+            if ((previous == null) || !sameLayoutInput(previous, vertex)) {
+                return false;
+            }
+            sources.add(previous);
+        }
+
+        final Map<String, LinkedList<IEdge>> previousEdges = new HashMap<>();
+        for (final Object edge : previousGraph.allEdges()) {
+            previousEdges.computeIfAbsent(describeEdge((IEdge) edge), k -> new LinkedList<>())
+                    .add((IEdge) edge);
+        }
+        final Collection<?> edges = dotGraph.allEdges();
+        final List<IEdge> sourceEdges = new ArrayList<>(edges.size());
+        for (final Object edge : edges) {
+            final LinkedList<IEdge> candidates = previousEdges.get(describeEdge((IEdge) edge));
+            if ((candidates == null) || candidates.isEmpty()) {
+                return false;
+            }
+            sourceEdges.add(candidates.removeFirst());
+        }
+
+        final Compaction compaction = new Compaction(getBands(previousGraph.allVertices()),
+                getBands(sources));
+        int i = 0;
+        for (final Object vertex : vertices) {
+            copyAttributes(sources.get(i++), (IVertex) vertex, compaction);
+        }
+        i = 0;
+        for (final Object edge : edges) {
+            final IEdge source = sourceEdges.get(i++);
+            for (final String attr : LayoutCache.EDGE_LAYOUT_ATTRS) {
+                if (source.hasAttr(attr)) {
+                    ((IEdge) edge).setAttr(attr,
+                            LayoutGeometry.mapVertically(source.getAttr(attr), compaction));
+                }
+            }
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Reused previous layout for " + vertices.size() + " of "
+                    + previousVertices.size() + " vertices");
+        }
+        return true;
+    }
+
+    /**
+     * Copies the layout of a vertex from the previous graph.
+     * @param from IVertex
+     * @param to IVertex
+     * @param compaction Compaction
+     */
+    private void copyAttributes(final IVertex from, final IVertex to,
+            final Compaction compaction) {
+        for (final String attr : LayoutCache.VERTEX_LAYOUT_ATTRS) {
+            if (from.hasAttr(attr)) {
+                to.setAttr(attr, LayoutGeometry.mapVertically(from.getAttr(attr), compaction));
+            }
+        }
+    }
+
+    /**
+     * Tells if two vertices have the same attributes regarding the layout.
+     * @param previous IVertex
+     * @param vertex IVertex
+     * @return boolean
+     */
+    private boolean sameLayoutInput(final IVertex previous, final IVertex vertex) {
+        for (final String attr : LayoutCache.VERTEX_KEY_ATTRS) {
+            if (!Objects.equals(previous.getAttr(attr), vertex.getAttr(attr))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
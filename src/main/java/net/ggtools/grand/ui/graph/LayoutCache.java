@@ -0,0 +1,506 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import net.ggtools.grand.ui.Application;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import sf.jzgraph.IDotGraph;
+import sf.jzgraph.IEdge;
+import sf.jzgraph.IVertex;
+
+/**
+ * A memory bounded cache of dot layouts. The cache is keyed by a structural
+ * hash of the graph created by {@link DotGraphCreator}: node names and the
+ * attributes having an influence on the layout (size, shape, bus thresholds),
+ * edges and the bus routing flag. Colors and line widths are left out so a
+ * preference change only affecting the look of the graph will not trigger a
+ * new layout.
+ * <p>
+ * The cache only stores the attributes computed by {@link sf.jzgraph.dot.impl.Dot}
+ * and used by the renderer. Those objects are never modified once the layout
+ * is done so they can safely be shared between several graphs. The layouts
+ * are also saved in <code>~/.grandui/layouts</code> so a build file opened
+ * again in a later session does not have to be layed out again.
+ *
+ * @author Christophe Labouisse
+ */
+public final class LayoutCache implements DotGraphAttributes {
+
+    /**
+     * Layout of a single graph.
+     */
+    static final class CachedLayout {
+        /**
+         * Attributes of the edges in canonical order.
+         */
+        private final Object[][] edgeAttributes;
+
+        /**
+         * Attributes of the vertices in canonical order.
+         */
+        private final Object[][] vertexAttributes;
+
+        /**
+         * Constructor for CachedLayout.
+         * @param vertexAttributes Object[][]
+         * @param edgeAttributes Object[][]
+         */
+        CachedLayout(final Object[][] vertexAttributes,
+                final Object[][] edgeAttributes) {
+            this.vertexAttributes = vertexAttributes;
+            this.edgeAttributes = edgeAttributes;
+        }
+
+        /**
+         * @return Returns the attributes of the edges.
+         */
+        Object[][] getEdgeAttributes() {
+            return edgeAttributes;
+        }
+
+        /**
+         * @return Returns the attributes of the vertices.
+         */
+        Object[][] getVertexAttributes() {
+            return vertexAttributes;
+        }
+
+        /**
+         * Returns the number of graph elements held by this layout.
+         * @return int
+         */
+        int getWeight() {
+            return vertexAttributes.length + edgeAttributes.length;
+        }
+    }
+
+    /**
+     * Field DEFAULT_MAX_DISK_SIZE.
+     * (value is {@value #DEFAULT_MAX_DISK_SIZE})
+     */
+    public static final long DEFAULT_MAX_DISK_SIZE = 32L * 1024 * 1024;
+
+    /**
+     * Field DEFAULT_MAX_WEIGHT.
+     * (value is {@value #DEFAULT_MAX_WEIGHT})
+     */
+    public static final int DEFAULT_MAX_WEIGHT = 50000;
+
+    /**
+     * Attributes set by dot on the edges.
+     */
+    static final String[] EDGE_LAYOUT_ATTRS = {POSITION_ATTR};
+
+    /**
+     * Name of the directory holding the persistent layouts.
+     * (value is {@value #LAYOUT_DIRECTORY})
+     */
+    private static final String LAYOUT_DIRECTORY = "layouts";
+
+    /**
+     * Field instance.
+     */
+    private static LayoutCache instance;
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(LayoutCache.class);
+
+    /**
+     * Attributes of the vertices used to compute the graph key.
+     */
+    static final String[] VERTEX_KEY_ATTRS = {MINWIDTH_ATTR, MINHEIGHT_ATTR,
+            SHAPE_ATTR, "inthreshold", "outthreshold"};
+
+    /**
+     * Attributes set by dot on the vertices.
+     */
+    static final String[] VERTEX_LAYOUT_ATTRS = {_BOUNDS_ATTR, _SHAPE_ATTR,
+            LABEL_ATTR, "inbus", "outbus", "tobus", "frombus"};
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return LayoutCache
+     */
+    public static synchronized LayoutCache getInstance() {
+        if (instance == null) {
+            PersistentLayoutStore persistentStore = null;
+            final Application application = Application.getInstance();
+            if ((application != null) && (application.getPreferenceStore() != null)) {
+                persistentStore = new PersistentLayoutStore(
+                        new File(application.getPreferenceStore().getBaseDir(),
+                                LAYOUT_DIRECTORY), DEFAULT_MAX_DISK_SIZE);
+            }
+            instance = new LayoutCache(DEFAULT_MAX_WEIGHT, persistentStore);
+        }
+        return instance;
+    }
+
+    /**
+     * Builds the canonical description of an edge.
+     * @param edge IEdge
+     * @return String
+     */
+    private static String describeEdge(final IEdge edge) {
+        return edge.getTail().getName() + '\u0000' + edge.getHead().getName()
+                + '\u0000' + edge.getName();
+    }
+
+    /**
+     * Returns the edges of a graph sorted in a canonical order.
+     * @param dotGraph IDotGraph
+     * @return List&lt;IEdge&gt;
+     */
+    private static List<IEdge> sortedEdges(final IDotGraph dotGraph) {
+        // Several edges may share the same description, keep them together in
+        // the graph order as they are interchangeable.
+        final Map<String, List<IEdge>> edges = new TreeMap<>();
+        for (final Object edge : dotGraph.allEdges()) {
+            edges.computeIfAbsent(describeEdge((IEdge) edge), k -> new ArrayList<>())
+                    .add((IEdge) edge);
+        }
+        final List<IEdge> result = new ArrayList<>();
+        for (final List<IEdge> sameEdges : edges.values()) {
+            result.addAll(sameEdges);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the vertices of a graph sorted by name.
+     * @param dotGraph IDotGraph
+     * @return List&lt;IVertex&gt;
+     */
+    private static List<IVertex> sortedVertices(final IDotGraph dotGraph) {
+        final Map<String, IVertex> vertices = new TreeMap<>();
+        for (final Object vertex : dotGraph.allVertices()) {
+            vertices.put(((IVertex) vertex).getName(), (IVertex) vertex);
+        }
+        return new ArrayList<>(vertices.values());
+    }
+
+    /**
+     * Field cache.
+     */
+    private final LinkedHashMap<String, CachedLayout> cache =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Field currentWeight.
+     */
+    private int currentWeight;
+
+    /**
+     * Field maxWeight.
+     */
+    private final int maxWeight;
+
+    /**
+     * Field persistentStore.
+     */
+    private final PersistentLayoutStore persistentStore;
+
+    /**
+     * Creates a new cache.
+     *
+     * @param maxWeight
+     *            the maximum number of vertices and edges the cache will hold
+     *            in memory before discarding the least recently used layouts.
+     * @param persistentStore
+     *            the store used to keep the layouts between sessions or
+     *            <code>null</code> to only cache the layouts in memory.
+     */
+    LayoutCache(final int maxWeight, final PersistentLayoutStore persistentStore) {
+        this.maxWeight = maxWeight;
+        this.persistentStore = persistentStore;
+    }
+
+    /**
+     * Removes all the layouts from the memory cache. The layouts saved on disk
+     * are kept.
+     */
+    public synchronized void clear() {
+        cache.clear();
+        currentWeight = 0;
+    }
+
+    /**
+     * Computes the key of a graph.
+     *
+     * @param dotGraph
+     *            a graph created by {@link DotGraphCreator}, not layed out yet.
+     * @param busRouting
+     *            <code>true</code> if the bus routing is enabled.
+     * @param componentLayout
+     *            <code>true</code> if the graph is layed out component by
+     *            component.
+     * @return the graph key.
+     */
+    public String computeKey(final IDotGraph dotGraph, final boolean busRouting,
+            final boolean componentLayout) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new RuntimeException("Cannot compute graph key", e);
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append(busRouting).append(componentLayout);
+        for (final IVertex vertex : sortedVertices(dotGraph)) {
+            sb.append("\u0001v").append(vertex.getName());
+            for (final String attr : VERTEX_KEY_ATTRS) {
+                sb.append('\u0000').append(vertex.getAttr(attr));
+            }
+            digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+            sb.setLength(0);
+        }
+        for (final IEdge edge : sortedEdges(dotGraph)) {
+            sb.append("\u0001e").append(describeEdge(edge));
+            digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+            sb.setLength(0);
+        }
+
+        final StringBuilder key = new StringBuilder();
+        for (final byte b : digest.digest()) {
+            key.append(String.format("%02x", b));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Copies a cached layout into a graph.
+     *
+     * @param key
+     *            the graph key as returned by {@link #computeKey(IDotGraph, boolean, boolean)}.
+     * @param dotGraph
+     *            the graph to update.
+     * @return <code>true</code> if a layout was found in the cache.
+     */
+    public boolean restore(final String key, final IDotGraph dotGraph) {
+        CachedLayout layout;
+        synchronized (this) {
+            layout = cache.get(key);
+        }
+        // The disk is read outside of the lock so a slow disk only delays
+        // the caller.
+        if ((layout == null) && (persistentStore != null)) {
+            layout = persistentStore.load(key);
+            if (layout != null) {
+                synchronized (this) {
+                    put(key, layout);
+                }
+            }
+        }
+        if (layout == null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("No cached layout for " + key);
+            }
+            return false;
+        }
+
+        final List<IVertex> vertices = sortedVertices(dotGraph);
+        final List<IEdge> edges = sortedEdges(dotGraph);
+        if ((vertices.size() != layout.vertexAttributes.length)
+                || (edges.size() != layout.edgeAttributes.length)) {
+            LOG.warn("Cached layout for " + key + " does not match the graph, discarding it");
+            synchronized (this) {
+                remove(key);
+            }
+            if (persistentStore != null) {
+                persistentStore.remove(key);
+            }
+            return false;
+        }
+
+        for (int i = 0; i < vertices.size(); i++) {
+            copyAttributes(layout.vertexAttributes[i], VERTEX_LAYOUT_ATTRS, vertices.get(i));
+        }
+        for (int i = 0; i < edges.size(); i++) {
+            copyAttributes(layout.edgeAttributes[i], EDGE_LAYOUT_ATTRS, edges.get(i));
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Reusing cached layout for " + key);
+        }
+        return true;
+    }
+
+    /**
+     * Stores the layout of a graph in the cache.
+     *
+     * @param key
+     *            the graph key as returned by {@link #computeKey(IDotGraph, boolean, boolean)}.
+     * @param dotGraph
+     *            a layed out graph.
+     */
+    public void store(final String key, final IDotGraph dotGraph) {
+        final List<IVertex> vertices = sortedVertices(dotGraph);
+        final Object[][] vertexAttributes = new Object[vertices.size()][];
+        for (int i = 0; i < vertexAttributes.length; i++) {
+            vertexAttributes[i] = extractAttributes(vertices.get(i), VERTEX_LAYOUT_ATTRS);
+        }
+
+        final List<IEdge> edges = sortedEdges(dotGraph);
+        final Object[][] edgeAttributes = new Object[edges.size()][];
+        for (int i = 0; i < edgeAttributes.length; i++) {
+            edgeAttributes[i] = extractAttributes(edges.get(i), EDGE_LAYOUT_ATTRS);
+        }
+
+        final CachedLayout layout = new CachedLayout(vertexAttributes, edgeAttributes);
+        synchronized (this) {
+            put(key, layout);
+        }
+        // Writing and evicting the files is done outside of the lock.
+        if (persistentStore != null) {
+            persistentStore.save(key, layout);
+        }
+    }
+
+    /**
+     * Copies attributes values to a vertex.
+     * @param values Object[]
+     * @param attrs String[]
+     * @param vertex IVertex
+     */
+    private void copyAttributes(final Object[] values, final String[] attrs,
+            final IVertex vertex) {
+        for (int i = 0; i < attrs.length; i++) {
+            if (values[i] != null) {
+                vertex.setAttr(attrs[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * Copies attributes values to an edge.
+     * @param values Object[]
+     * @param attrs String[]
+     * @param edge IEdge
+     */
+    private void copyAttributes(final Object[] values, final String[] attrs,
+            final IEdge edge) {
+        for (int i = 0; i < attrs.length; i++) {
+            if (values[i] != null) {
+                edge.setAttr(attrs[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * Extracts attributes from a vertex.
+     * @param vertex IVertex
+     * @param attrs String[]
+     * @return Object[]
+     */
+    private Object[] extractAttributes(final IVertex vertex, final String[] attrs) {
+        final Object[] values = new Object[attrs.length];
+        for (int i = 0; i < attrs.length; i++) {
+            if (vertex.hasAttr(attrs[i])) {
+                values[i] = vertex.getAttr(attrs[i]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Extracts attributes from an edge.
+     * @param edge IEdge
+     * @param attrs String[]
+     * @return Object[]
+     */
+    private Object[] extractAttributes(final IEdge edge, final String[] attrs) {
+        final Object[] values = new Object[attrs.length];
+        for (int i = 0; i < attrs.length; i++) {
+            if (edge.hasAttr(attrs[i])) {
+                values[i] = edge.getAttr(attrs[i]);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Adds a layout to the memory cache, discarding the least recently used
+     * ones if needed. Must be called with the cache lock held.
+     * @param key String
+     * @param layout CachedLayout
+     */
+    private void put(final String key, final CachedLayout layout) {
+        if (layout.getWeight() > maxWeight) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Graph too big to be cached in memory: " + layout.getWeight());
+            }
+            return;
+        }
+
+        remove(key);
+        cache.put(key, layout);
+        currentWeight += layout.getWeight();
+
+        for (final Iterator<CachedLayout> iter = cache.values().iterator();
+                currentWeight > maxWeight && iter.hasNext();) {
+            final CachedLayout eldest = iter.next();
+            currentWeight -= eldest.getWeight();
+            iter.remove();
+        }
+
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Cached layout for " + key + ", cache size: " + cache.size()
+                    + " layouts, " + currentWeight + " elements");
+        }
+    }
+
+    /**
+     * Removes a layout from the cache. Must be called with the cache lock
+     * held.
+     * @param key String
+     */
+    private void remove(final String key) {
+        final CachedLayout layout = cache.remove(key);
+        if (layout != null) {
+            currentWeight -= layout.getWeight();
+        }
+    }
+}
@@ -0,0 +1,228 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.util.function.DoubleUnaryOperator;
+
+import sf.jzgraph.dot.impl.DotRoute;
+import sf.jzgraph.impl.GraphShape;
+
+/**
+ * Helper methods dealing with the geometric attributes of a layed out graph:
+ * bounds, shapes and routes either computed by dot or read from the layout
+ * cache.
+ *
+ * @author Christophe Labouisse
+ */
+final class LayoutGeometry {
+
+    /**
+     * Returns the bounding box of a geometric attribute.
+     *
+     * @param value
+     *            a rectangle, a shape or a route.
+     * @return the bounds or <code>null</code> if the value has no geometry.
+     */
+    static Rectangle2D getBounds(final Object value) {
+        if (value instanceof Rectangle2D) {
+            return (Rectangle2D) value;
+        }
+        final PathIterator pathIterator = getPathIterator(value, new AffineTransform());
+        if (pathIterator == null) {
+            return null;
+        }
+        final Path2D path = new Path2D.Double();
+        path.append(pathIterator, false);
+        return path.getBounds2D();
+    }
+
+    /**
+     * Returns the end point of a route.
+     *
+     * @param route
+     *            a {@link DotRoute} or a {@link CachedRoute}.
+     * @return the end point or <code>null</code> if the route ends on its
+     *         last path point.
+     */
+    static Point2D getEndPoint(final Object route) {
+        if (route instanceof CachedRoute) {
+            return ((CachedRoute) route).getEndPt();
+        }
+        final DotRoute dotRoute = (DotRoute) route;
+        if (dotRoute.getEndPt() == null) {
+            return null;
+        }
+        return new Point2D.Double(dotRoute.getEndPt().getX(), dotRoute.getEndPt().getY());
+    }
+
+    /**
+     * Returns a path iterator over a shape or a route.
+     *
+     * @param value
+     *            a shape or a route.
+     * @param transform
+     *            the transformation to apply to the coordinates.
+     * @return the iterator or <code>null</code> if the value is neither a
+     *         shape nor a route.
+     */
+    static PathIterator getPathIterator(final Object value, final AffineTransform transform) {
+        if (value instanceof DotRoute) {
+            return ((DotRoute) value).getPath().getPathIterator(transform);
+        } else if (value instanceof CachedRoute) {
+            return ((CachedRoute) value).getPath().getPathIterator(transform);
+        } else if (value instanceof GraphShape) {
+            return ((GraphShape) value).getPathIterator(transform);
+        } else if (value instanceof Shape) {
+            return ((Shape) value).getPathIterator(transform);
+        }
+        return null;
+    }
+
+    /**
+     * Tells if a value is a route.
+     * @param value Object
+     * @return boolean
+     */
+    static boolean isRoute(final Object value) {
+        return (value instanceof DotRoute) || (value instanceof CachedRoute);
+    }
+
+    /**
+     * Tells if a value is a node shape.
+     * @param value Object
+     * @return boolean
+     */
+    static boolean isShape(final Object value) {
+        return (value instanceof GraphShape) || (value instanceof Shape);
+    }
+
+    /**
+     * Returns a translated copy of a geometric attribute. Routes are returned
+     * as {@link CachedRoute}s and shapes as {@link Path2D}s.
+     *
+     * @param value
+     *            the attribute value.
+     * @param dx
+     *            the horizontal translation.
+     * @param dy
+     *            the vertical translation.
+     * @return the translated value, or the value itself if it has no geometry.
+     */
+    static Object translate(final Object value, final double dx, final double dy) {
+        if ((dx == 0) && (dy == 0)) {
+            return value;
+        }
+        if (value instanceof Rectangle2D) {
+            final Rectangle2D rect = (Rectangle2D) value;
+            return new Rectangle2D.Double(rect.getX() + dx, rect.getY() + dy,
+                    rect.getWidth(), rect.getHeight());
+        }
+        final AffineTransform transform = AffineTransform.getTranslateInstance(dx, dy);
+        final PathIterator pathIterator = getPathIterator(value, transform);
+        if (pathIterator == null) {
+            return value;
+        }
+        final Path2D path = new Path2D.Double();
+        path.append(pathIterator, false);
+        if (isRoute(value)) {
+            final Point2D endPt = getEndPoint(value);
+            return new CachedRoute(path, (endPt == null) ? null
+                    : new Point2D.Double(endPt.getX() + dx, endPt.getY() + dy));
+        }
+        return path;
+    }
+
+    /**
+     * Returns a copy of a geometric attribute with its vertical coordinates
+     * remapped. Rectangles keep their height. Routes are returned as
+     * {@link CachedRoute}s and shapes as {@link Path2D}s.
+     *
+     * @param value
+     *            the attribute value.
+     * @param yMapping
+     *            the function mapping the old vertical coordinates to the new
+     *            ones.
+     * @return the remapped value, or the value itself if it has no geometry.
+     */
+    static Object mapVertically(final Object value, final DoubleUnaryOperator yMapping) {
+        if (value instanceof Rectangle2D) {
+            final Rectangle2D rect = (Rectangle2D) value;
+            return new Rectangle2D.Double(rect.getX(), yMapping.applyAsDouble(rect.getY()),
+                    rect.getWidth(), rect.getHeight());
+        }
+        final PathIterator pathIterator = getPathIterator(value, new AffineTransform());
+        if (pathIterator == null) {
+            return value;
+        }
+        final Path2D path = new Path2D.Double(pathIterator.getWindingRule());
+        final double[] coords = new double[6];
+        while (!pathIterator.isDone()) {
+            final int type = pathIterator.currentSegment(coords);
+            for (int i = 1; i < coords.length; i += 2) {
+                coords[i] = yMapping.applyAsDouble(coords[i]);
+            }
+            switch (type) {
+            case PathIterator.SEG_MOVETO:
+                path.moveTo(coords[0], coords[1]);
+                break;
+            case PathIterator.SEG_LINETO:
+                path.lineTo(coords[0], coords[1]);
+                break;
+            case PathIterator.SEG_QUADTO:
+                path.quadTo(coords[0], coords[1], coords[2], coords[3]);
+                break;
+            case PathIterator.SEG_CUBICTO:
+                path.curveTo(coords[0], coords[1], coords[2], coords[3], coords[4], coords[5]);
+                break;
+            default:
+                path.closePath();
+                break;
+            }
+            pathIterator.next();
+        }
+        if (isRoute(value)) {
+            final Point2D endPt = getEndPoint(value);
+            return new CachedRoute(path, (endPt == null) ? null
+                    : new Point2D.Double(endPt.getX(), yMapping.applyAsDouble(endPt.getY())));
+        }
+        return path;
+    }
+
+    /**
+     * Private constructor, static methods only.
+     */
+    private LayoutGeometry() {
+    }
+}
@@ -0,0 +1,432 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Timings of one run of the graph pipeline, from the loading of the build
+ * file to the rendering of the figure. Each run is started by an operation
+ * of the {@link GraphController} such as opening a file or adding a filter;
+ * the phases the operation does not go through are left at -1.
+ * <p>
+ * The allocated memory of a phase is the one of the thread running it: the
+ * work done by other threads, e.g. the parallel layout of the connected
+ * components, is not counted.
+ * </p>
+ * <p>
+ * The measures are recorded by the pipeline thread and read by the viewer
+ * from the display thread, the accesses to the phase arrays are
+ * synchronized on the metrics.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+public final class LoadMetrics {
+
+    /**
+     * Measures one phase. Must be started and ended from the same thread,
+     * the measures can then be recorded from another thread once the phase
+     * has been handed over, e.g. through a {@link java.util.concurrent.Future}.
+     */
+    final class PhaseTimer {
+        /**
+         * Field phase.
+         */
+        private final int phase;
+
+        /**
+         * Field startNanos.
+         */
+        private final long startNanos;
+
+        /**
+         * Field startAllocated.
+         */
+        private final long startAllocated;
+
+        /**
+         * Field jfrEvent.
+         */
+        private final Object jfrEvent;
+
+        /**
+         * Duration measured by {@link #end()}.
+         */
+        private long duration;
+
+        /**
+         * Allocated bytes measured by {@link #end()}, -1 if unknown.
+         */
+        private long allocated;
+
+        /**
+         * Constructor for PhaseTimer.
+         * @param phase int
+         */
+        private PhaseTimer(final int phase) {
+            this.phase = phase;
+            jfrEvent = JFR_AVAILABLE ? PipelinePhaseEvent.start() : null;
+            startAllocated = allocatedBytes();
+            startNanos = System.nanoTime();
+        }
+
+        /**
+         * Ends the measures of the phase without recording them. Must be
+         * called from the thread which started the timer.
+         *
+         * @return the timer itself.
+         */
+        PhaseTimer end() {
+            duration = System.nanoTime() - startNanos;
+            allocated = (startAllocated < 0) ? -1 : allocatedBytes() - startAllocated;
+            return this;
+        }
+
+        /**
+         * Adds the measures taken by {@link #end()} to the phase.
+         */
+        void record() {
+            synchronized (LoadMetrics.this) {
+                durations[phase] = Math.max(durations[phase], 0) + duration;
+                if (allocated >= 0) {
+                    allocations[phase] = Math.max(allocations[phase], 0) + allocated;
+                }
+            }
+            if (jfrEvent != null) {
+                PipelinePhaseEvent.commit(jfrEvent, PHASE_NAMES[phase], operation, fileName,
+                        nodeCount, edgeCount, allocated);
+            }
+        }
+
+        /**
+         * Stops the timer and adds the measures to the phase.
+         */
+        void stop() {
+            end().record();
+        }
+    }
+
+    /**
+     * Field PARSE.
+     * (value is {@value #PARSE})
+     */
+    public static final int PARSE = 0;
+
+    /**
+     * Field FILTER.
+     * (value is {@value #FILTER})
+     */
+    public static final int FILTER = 1;
+
+    /**
+     * Field DOT_GRAPH.
+     * (value is {@value #DOT_GRAPH})
+     */
+    public static final int DOT_GRAPH = 2;
+
+    /**
+     * Attempt to reuse an existing layout, incrementally or from the layout
+     * cache, before running dot.
+     * (value is {@value #LAYOUT_REUSE})
+     */
+    public static final int LAYOUT_REUSE = 3;
+
+    /**
+     * Field LAYOUT.
+     * (value is {@value #LAYOUT})
+     */
+    public static final int LAYOUT = 4;
+
+    /**
+     * Field RENDER.
+     * (value is {@value #RENDER})
+     */
+    public static final int RENDER = 5;
+
+    /**
+     * Field PHASE_COUNT.
+     * (value is {@value #PHASE_COUNT})
+     */
+    public static final int PHASE_COUNT = 6;
+
+    /**
+     * Field PHASE_NAMES.
+     */
+    private static final String[] PHASE_NAMES =
+            {"Parse", "Filter", "Dot graph", "Layout reuse", "Layout", "Render"};
+
+    /**
+     * Field JFR_AVAILABLE.
+     */
+    private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+    /**
+     * Field THREADS.
+     */
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Returns the name of a phase.
+     *
+     * @param phase int
+     * @return String
+     */
+    public static String getPhaseName(final int phase) {
+        return PHASE_NAMES[phase];
+    }
+
+    /**
+     * Returns the number of bytes allocated so far by the current thread.
+     *
+     * @return the number of bytes or -1 if the JVM cannot tell.
+     */
+    private static long allocatedBytes() {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            final com.sun.management.ThreadMXBean threads =
+                    (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported()
+                    && threads.isThreadAllocatedMemoryEnabled()) {
+                return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Tells if the Flight Recorder API is present in the running JVM.
+     *
+     * @return boolean
+     */
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (final ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * Field allocations.
+     */
+    private final long[] allocations = new long[PHASE_COUNT];
+
+    /**
+     * Field completed.
+     */
+    private volatile boolean completed;
+
+    /**
+     * Field durations.
+     */
+    private final long[] durations = new long[PHASE_COUNT];
+
+    /**
+     * Field edgeCount.
+     */
+    private volatile int edgeCount = -1;
+
+    /**
+     * Field fileName.
+     */
+    private final String fileName;
+
+    /**
+     * Field layoutSource.
+     */
+    private volatile String layoutSource = "";
+
+    /**
+     * Field nodeCount.
+     */
+    private volatile int nodeCount = -1;
+
+    /**
+     * Field operation.
+     */
+    private final String operation;
+
+    /**
+     * Field startTime.
+     */
+    private final long startTime;
+
+    /**
+     * Creates the metrics of a new run.
+     *
+     * @param operation the operation starting the run, e.g. "Open".
+     * @param fileName the build file, may be <code>null</code>.
+     */
+    LoadMetrics(final String operation, final String fileName) {
+        this.operation = operation;
+        this.fileName = fileName;
+        startTime = System.currentTimeMillis();
+        Arrays.fill(durations, -1);
+        Arrays.fill(allocations, -1);
+    }
+
+    /**
+     * Returns the bytes allocated during a phase.
+     *
+     * @param phase int
+     * @return the number of bytes, -1 if unknown.
+     */
+    public synchronized long getAllocatedBytes(final int phase) {
+        return allocations[phase];
+    }
+
+    /**
+     * Returns the duration of a phase.
+     *
+     * @param phase int
+     * @return the duration in nanoseconds, -1 if the phase was not run.
+     */
+    public synchronized long getDuration(final int phase) {
+        return durations[phase];
+    }
+
+    /**
+     * @return Returns the number of edges of the laid out graph or -1.
+     */
+    public int getEdgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * @return Returns the build file name.
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Tells how the layout was obtained: computed, restored from the cache
+     * or derived from the previous one.
+     *
+     * @return String
+     */
+    public String getLayoutSource() {
+        return layoutSource;
+    }
+
+    /**
+     * @return Returns the number of nodes of the laid out graph or -1.
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return Returns the operation.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return Returns the start time in milliseconds.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the total duration of the phases.
+     *
+     * @return the duration in nanoseconds.
+     */
+    public synchronized long getTotalDuration() {
+        long total = 0;
+        for (final long duration : durations) {
+            total += Math.max(duration, 0);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the total allocated memory of the phases.
+     *
+     * @return the number of bytes, -1 if unknown.
+     */
+    public synchronized long getTotalAllocatedBytes() {
+        long total = -1;
+        for (final long allocated : allocations) {
+            if (allocated >= 0) {
+                total = Math.max(total, 0) + allocated;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Tells if the run went up to the rendering of the graph.
+     *
+     * @return boolean
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Records the size of the graph being laid out.
+     *
+     * @param nodes int
+     * @param edges int
+     */
+    void setGraphSize(final int nodes, final int edges) {
+        nodeCount = nodes;
+        edgeCount = edges;
+    }
+
+    /**
+     * @param layoutSource The layoutSource to set.
+     */
+    void setLayoutSource(final String layoutSource) {
+        this.layoutSource = layoutSource;
+    }
+
+    /**
+     * Marks the run as having rendered the graph.
+     */
+    void setCompleted() {
+        completed = true;
+    }
+
+    /**
+     * Starts measuring a phase.
+     *
+     * @param phase int
+     * @return the timer to stop at the end of the phase.
+     */
+    PhaseTimer startPhase(final int phase) {
+        return new PhaseTimer(phase);
+    }
+}
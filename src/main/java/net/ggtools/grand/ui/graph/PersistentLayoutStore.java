@@ -0,0 +1,478 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.FlatteningPathIterator;
+import java.awt.geom.Path2D;
+import java.awt.geom.PathIterator;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Saves layouts to disk, one file per layout. The files use a compact binary
+ * format and are read back in a single read. They are not memory mapped as a
+ * mapped file cannot be deleted or replaced on Windows until the mapping is
+ * garbage collected. When the total size of the files exceeds a limit the
+ * least recently used layouts are removed.
+ * <p>
+ * The store does not hold any lock: each layout is written to its own
+ * temporary file before being moved in place so several threads, or several
+ * GrandUI processes, can share the same directory.
+ * <p>
+ * The shapes and routes are flattened when written and read back as plain
+ * {@link java.awt.Shape}s and {@link CachedRoute}s.
+ *
+ * @author Christophe Labouisse
+ */
+final class PersistentLayoutStore {
+
+    /**
+     * Field FILE_SUFFIX.
+     * (value is {@value #FILE_SUFFIX})
+     */
+    private static final String FILE_SUFFIX = ".layout";
+
+    /**
+     * Field FORMAT_VERSION.
+     * (value is {@value #FORMAT_VERSION})
+     */
+    private static final short FORMAT_VERSION = 1;
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(PersistentLayoutStore.class);
+
+    /**
+     * Magic number starting each file: "GLYT".
+     * (value is {@value #MAGIC})
+     */
+    private static final int MAGIC = 0x474c5954;
+
+    /**
+     * Field TYPE_NULL.
+     * (value is {@value #TYPE_NULL})
+     */
+    private static final byte TYPE_NULL = 0;
+
+    /**
+     * Field TYPE_RECTANGLE.
+     * (value is {@value #TYPE_RECTANGLE})
+     */
+    private static final byte TYPE_RECTANGLE = 1;
+
+    /**
+     * Field TYPE_ROUTE.
+     * (value is {@value #TYPE_ROUTE})
+     */
+    private static final byte TYPE_ROUTE = 2;
+
+    /**
+     * Field TYPE_SHAPE.
+     * (value is {@value #TYPE_SHAPE})
+     */
+    private static final byte TYPE_SHAPE = 3;
+
+    /**
+     * Field TYPE_STRING.
+     * (value is {@value #TYPE_STRING})
+     */
+    private static final byte TYPE_STRING = 4;
+
+    /**
+     * Field directory.
+     */
+    private final File directory;
+
+    /**
+     * Field maxSize.
+     */
+    private final long maxSize;
+
+    /**
+     * Creates a new store.
+     *
+     * @param directory
+     *            the directory holding the layout files.
+     * @param maxSize
+     *            the maximum size in bytes of all the layout files.
+     */
+    PersistentLayoutStore(final File directory, final long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Loads a layout.
+     *
+     * @param key
+     *            the layout key.
+     * @return the layout or <code>null</code> if no layout can be read for
+     *         this key.
+     */
+    LayoutCache.CachedLayout load(final String key) {
+        final File file = getFile(key);
+        if (!file.isFile()) {
+            return null;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final ByteBuffer buffer = readFully(channel);
+            if ((buffer.getInt() != MAGIC) || (buffer.getShort() != FORMAT_VERSION)) {
+                LOG.warn("Unsupported layout file " + file + ", discarding it");
+                remove(key);
+                return null;
+            }
+            final Object[][] vertexAttributes =
+                    readAttributes(buffer, LayoutCache.VERTEX_LAYOUT_ATTRS.length);
+            final Object[][] edgeAttributes =
+                    readAttributes(buffer, LayoutCache.EDGE_LAYOUT_ATTRS.length);
+            file.setLastModified(System.currentTimeMillis());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Loaded layout from " + file);
+            }
+            return new LayoutCache.CachedLayout(vertexAttributes, edgeAttributes);
+        } catch (final IOException e) {
+            LOG.warn("Cannot read layout file " + file, e);
+        } catch (final BufferUnderflowException | IllegalArgumentException e) {
+            LOG.warn("Corrupted layout file " + file + ", discarding it", e);
+            remove(key);
+        }
+        return null;
+    }
+
+    /**
+     * Removes a layout from the store.
+     *
+     * @param key
+     *            the layout key.
+     */
+    void remove(final String key) {
+        final File file = getFile(key);
+        if (file.exists() && !file.delete()) {
+            LOG.warn("Cannot delete layout file " + file);
+        }
+    }
+
+    /**
+     * Saves a layout. Errors are logged but otherwise ignored as the layout
+     * can always be computed again.
+     *
+     * @param key
+     *            the layout key.
+     * @param layout
+     *            the layout to save.
+     */
+    void save(final String key, final LayoutCache.CachedLayout layout) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            LOG.warn("Cannot create layout directory " + directory);
+            return;
+        }
+
+        final File file = getFile(key);
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(directory.toPath(), key, ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFile.toFile())))) {
+                out.writeInt(MAGIC);
+                out.writeShort(FORMAT_VERSION);
+                writeAttributes(out, layout.getVertexAttributes(),
+                        LayoutCache.VERTEX_LAYOUT_ATTRS.length);
+                writeAttributes(out, layout.getEdgeAttributes(),
+                        LayoutCache.EDGE_LAYOUT_ATTRS.length);
+            }
+            Files.move(tempFile, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Saved layout to " + file);
+            }
+        } catch (final IOException e) {
+            LOG.warn("Cannot save layout to " + file, e);
+            if (tempFile != null) {
+                tempFile.toFile().delete();
+            }
+            return;
+        }
+
+        evict();
+    }
+
+    /**
+     * Deletes the least recently used layout files until the total size of
+     * the store fits the limit.
+     */
+    private void evict() {
+        final File[] files = directory.listFiles((dir, name) -> name.endsWith(FILE_SUFFIX));
+        if (files == null) {
+            return;
+        }
+
+        long totalSize = 0;
+        for (final File file : files) {
+            totalSize += file.length();
+        }
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; (totalSize > maxSize) && (i < files.length); i++) {
+            final long length = files[i].length();
+            if (files[i].delete()) {
+                totalSize -= length;
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("Evicted layout file " + files[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Method getFile.
+     * @param key String
+     * @return File
+     */
+    private File getFile(final String key) {
+        return new File(directory, key + FILE_SUFFIX);
+    }
+
+    /**
+     * Reads a whole file in a heap buffer.
+     * @param channel FileChannel
+     * @return ByteBuffer
+     * @throws IOException if the file cannot be read or is too big
+     */
+    private ByteBuffer readFully(final FileChannel channel) throws IOException {
+        final long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Layout file too big: " + size);
+        }
+        final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads the attributes of a set of elements.
+     * @param buffer ByteBuffer
+     * @param attrCount int
+     * @return Object[][]
+     */
+    private Object[][] readAttributes(final ByteBuffer buffer, final int attrCount) {
+        final int count = buffer.getInt();
+        if ((count < 0) || (buffer.getInt() != attrCount)) {
+            throw new IllegalArgumentException("Bad attribute table header");
+        }
+        final Object[][] attributes = new Object[count][attrCount];
+        for (final Object[] values : attributes) {
+            for (int i = 0; i < attrCount; i++) {
+                values[i] = readValue(buffer);
+            }
+        }
+        return attributes;
+    }
+
+    /**
+     * Reads a flattened path.
+     * @param buffer ByteBuffer
+     * @return Path2D
+     */
+    private Path2D readPath(final ByteBuffer buffer) {
+        final int segmentCount = buffer.getInt();
+        final Path2D.Float path = new Path2D.Float(PathIterator.WIND_NON_ZERO, segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            final byte segType = buffer.get();
+            switch (segType) {
+            case PathIterator.SEG_MOVETO:
+                path.moveTo(buffer.getFloat(), buffer.getFloat());
+                break;
+
+            case PathIterator.SEG_LINETO:
+                path.lineTo(buffer.getFloat(), buffer.getFloat());
+                break;
+
+            case PathIterator.SEG_CLOSE:
+                path.closePath();
+                break;
+
+            default:
+                throw new IllegalArgumentException("Unexpected segment type " + segType);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Reads an attribute value.
+     * @param buffer ByteBuffer
+     * @return Object
+     */
+    private Object readValue(final ByteBuffer buffer) {
+        final byte type = buffer.get();
+        switch (type) {
+        case TYPE_NULL:
+            return null;
+
+        case TYPE_RECTANGLE:
+            return new Rectangle2D.Float(buffer.getFloat(), buffer.getFloat(),
+                    buffer.getFloat(), buffer.getFloat());
+
+        case TYPE_ROUTE:
+            final Path2D path = readPath(buffer);
+            Point2D endPt = null;
+            if (buffer.get() != 0) {
+                endPt = new Point2D.Float(buffer.getFloat(), buffer.getFloat());
+            }
+            return new CachedRoute(path, endPt);
+
+        case TYPE_SHAPE:
+            return readPath(buffer);
+
+        case TYPE_STRING:
+            final byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+
+        default:
+            throw new IllegalArgumentException("Unexpected value type " + type);
+        }
+    }
+
+    /**
+     * Writes the attributes of a set of elements.
+     * @param out DataOutputStream
+     * @param attributes Object[][]
+     * @param attrCount int
+     * @throws IOException if an attribute cannot be written
+     */
+    private void writeAttributes(final DataOutputStream out, final Object[][] attributes,
+            final int attrCount) throws IOException {
+        out.writeInt(attributes.length);
+        out.writeInt(attrCount);
+        for (final Object[] values : attributes) {
+            for (final Object value : values) {
+                writeValue(out, value);
+            }
+        }
+    }
+
+    /**
+     * Writes a path, flattening the curves.
+     * @param out DataOutputStream
+     * @param pathIterator PathIterator
+     * @throws IOException if the path cannot be written
+     */
+    private void writePath(final DataOutputStream out, final PathIterator pathIterator)
+            throws IOException {
+        // Segments are buffered to write their count first.
+        final float[] coords = new float[6];
+        float[] segments = new float[48];
+        int segmentCount = 0;
+        for (final PathIterator ite = new FlatteningPathIterator(pathIterator,
+                DotGraphAttributes.PATH_ITERATOR_FLATNESS); !ite.isDone(); ite.next()) {
+            if (segmentCount * 3 == segments.length) {
+                segments = Arrays.copyOf(segments, segments.length * 2);
+            }
+            segments[segmentCount * 3] = ite.currentSegment(coords);
+            segments[segmentCount * 3 + 1] = coords[0];
+            segments[segmentCount * 3 + 2] = coords[1];
+            segmentCount++;
+        }
+
+        out.writeInt(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            final int segType = (int) segments[i * 3];
+            out.writeByte(segType);
+            if (segType != PathIterator.SEG_CLOSE) {
+                out.writeFloat(segments[i * 3 + 1]);
+                out.writeFloat(segments[i * 3 + 2]);
+            }
+        }
+    }
+
+    /**
+     * Writes an attribute value.
+     * @param out DataOutputStream
+     * @param value Object
+     * @throws IOException if the value type is not supported
+     */
+    private void writeValue(final DataOutputStream out, final Object value)
+            throws IOException {
+        if (value == null) {
+            out.writeByte(TYPE_NULL);
+        } else if (value instanceof Rectangle2D) {
+            final Rectangle2D rect = (Rectangle2D) value;
+            out.writeByte(TYPE_RECTANGLE);
+            out.writeFloat((float) rect.getX());
+            out.writeFloat((float) rect.getY());
+            out.writeFloat((float) rect.getWidth());
+            out.writeFloat((float) rect.getHeight());
+        } else if (LayoutGeometry.isRoute(value)) {
+            final Point2D endPt = LayoutGeometry.getEndPoint(value);
+            out.writeByte(TYPE_ROUTE);
+            writePath(out, LayoutGeometry.getPathIterator(value, new AffineTransform()));
+            out.writeBoolean(endPt != null);
+            if (endPt != null) {
+                out.writeFloat((float) endPt.getX());
+                out.writeFloat((float) endPt.getY());
+            }
+        } else if (LayoutGeometry.isShape(value)) {
+            out.writeByte(TYPE_SHAPE);
+            writePath(out, LayoutGeometry.getPathIterator(value, new AffineTransform()));
+        } else if (value instanceof String) {
+            final byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            out.writeByte(TYPE_STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        } else {
+            throw new IOException("Unsupported layout value " + value.getClass().getName());
+        }
+    }
+}
@@ -0,0 +1,156 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import net.ggtools.grand.ui.event.Dispatcher;
+import net.ggtools.grand.ui.event.EventManager;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * Keeps the {@link LoadMetrics} of the last runs of the graph pipeline of
+ * all the graph controllers.
+ *
+ * @author Christophe Labouisse
+ */
+public final class PipelineMetrics {
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(PipelineMetrics.class);
+
+    /**
+     * Field MAX_LOADS.
+     * (value is {@value #MAX_LOADS})
+     */
+    private static final int MAX_LOADS = 100;
+
+    /**
+     * Field instance.
+     */
+    private static PipelineMetrics instance;
+
+    /**
+     * Returns the singleton instance.
+     *
+     * @return PipelineMetrics
+     */
+    public static synchronized PipelineMetrics getInstance() {
+        if (instance == null) {
+            instance = new PipelineMetrics();
+        }
+        return instance;
+    }
+
+    /**
+     * Field eventManager.
+     */
+    private final EventManager eventManager = new EventManager("Pipeline metrics");
+
+    /**
+     * Field loadRecordedDispatcher.
+     */
+    private final Dispatcher loadRecordedDispatcher;
+
+    /**
+     * Field loads.
+     */
+    private final LinkedList<LoadMetrics> loads = new LinkedList<>();
+
+    /**
+     * Constructor for PipelineMetrics.
+     */
+    private PipelineMetrics() {
+        try {
+            loadRecordedDispatcher = eventManager.createDispatcher(
+                    PipelineMetricsListener.class.getDeclaredMethod("loadRecorded",
+                            LoadMetrics.class));
+        } catch (final SecurityException | NoSuchMethodException e) {
+            LOG.fatal("Caught exception initializing PipelineMetrics", e);
+            throw new RuntimeException("Cannot instantiate PipelineMetrics", e);
+        }
+    }
+
+    /**
+     * Method addListener.
+     * @param listener PipelineMetricsListener
+     */
+    public void addListener(final PipelineMetricsListener listener) {
+        eventManager.subscribe(listener);
+    }
+
+    /**
+     * Returns the metrics of the last runs, oldest first.
+     *
+     * @return List&lt;LoadMetrics&gt;
+     */
+    public synchronized List<LoadMetrics> getLoads() {
+        return Collections.unmodifiableList(new ArrayList<>(loads));
+    }
+
+    /**
+     * Method removeListener.
+     * @param listener PipelineMetricsListener
+     */
+    public void removeListener(final PipelineMetricsListener listener) {
+        eventManager.unSubscribe(listener);
+    }
+
+    /**
+     * Stores the metrics of a finished run and notifies the listeners.
+     *
+     * @param metrics LoadMetrics
+     */
+    void record(final LoadMetrics metrics) {
+        synchronized (this) {
+            loads.addLast(metrics);
+            if (loads.size() > MAX_LOADS) {
+                loads.removeFirst();
+            }
+        }
+        if (LOG.isInfoEnabled()) {
+            final StringBuilder message = new StringBuilder(metrics.getOperation())
+                    .append(" took ").append(metrics.getTotalDuration() / 1000000L).append(" ms (");
+            for (int phase = 0; phase < LoadMetrics.PHASE_COUNT; phase++) {
+                if (metrics.getDuration(phase) >= 0) {
+                    message.append(' ').append(LoadMetrics.getPhaseName(phase)).append(": ")
+                            .append(metrics.getDuration(phase) / 1000000L).append(" ms");
+                }
+            }
+            LOG.info(message.append(" )").toString());
+        }
+        loadRecordedDispatcher.dispatch(metrics);
+    }
+}
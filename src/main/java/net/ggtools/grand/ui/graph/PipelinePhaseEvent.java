@@ -0,0 +1,123 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event emitted for each phase of the graph pipeline. This
+ * class is only loaded when the Flight Recorder API is available, callers
+ * go through the static methods and handle the events as plain objects.
+ *
+ * @author Christophe Labouisse
+ */
+@Name("net.ggtools.grand.ui.PipelinePhase")
+@Label("Graph Pipeline Phase")
+@Category({"GrandUI", "Graph"})
+@Description("A phase of the loading, layout and rendering of a graph")
+final class PipelinePhaseEvent extends Event {
+
+    /**
+     * Field phase.
+     */
+    @Label("Phase")
+    private String phase;
+
+    /**
+     * Field operation.
+     */
+    @Label("Operation")
+    private String operation;
+
+    /**
+     * Field file.
+     */
+    @Label("Build File")
+    private String file;
+
+    /**
+     * Field nodes.
+     */
+    @Label("Nodes")
+    private int nodes;
+
+    /**
+     * Field edges.
+     */
+    @Label("Edges")
+    private int edges;
+
+    /**
+     * Field allocated.
+     */
+    @Label("Allocated")
+    @DataAmount
+    private long allocated;
+
+    /**
+     * Creates and begins an event.
+     *
+     * @return the event.
+     */
+    static Object start() {
+        final PipelinePhaseEvent event = new PipelinePhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits an event created by {@link #start()}.
+     *
+     * @param handle the event.
+     * @param phase String
+     * @param operation String
+     * @param file String
+     * @param nodes int
+     * @param edges int
+     * @param allocated long
+     */
+    static void commit(final Object handle, final String phase, final String operation,
+            final String file, final int nodes, final int edges, final long allocated) {
+        final PipelinePhaseEvent event = (PipelinePhaseEvent) handle;
+        event.end();
+        if (event.shouldCommit()) {
+            event.phase = phase;
+            event.operation = operation;
+            event.file = file;
+            event.nodes = nodes;
+            event.edges = edges;
+            event.allocated = allocated;
+            event.commit();
+        }
+    }
+}
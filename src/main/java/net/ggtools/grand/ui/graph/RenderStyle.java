@@ -0,0 +1,253 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import net.ggtools.grand.ui.GrandUiPrefStore;
+import net.ggtools.grand.ui.prefs.PreferenceKeys;
+
+import org.eclipse.swt.graphics.Color;
+
+/**
+ * An immutable snapshot of the preferences defining the look of a graph. A
+ * snapshot is taken when the graph controller is created and each time a
+ * graph preference changes, sparing the preference lookups and color
+ * conversions for each node and link.
+ *
+ * @author Christophe Labouisse
+ */
+public final class RenderStyle {
+    /**
+     * Style of the links of a given type.
+     */
+    public static final class LinkStyle {
+        /**
+         * Field color.
+         */
+        private final Color color;
+
+        /**
+         * Field lineWidth.
+         */
+        private final int lineWidth;
+
+        /**
+         * Constructor for LinkStyle.
+         * @param preferenceStore GrandUiPrefStore
+         * @param colorKey String
+         * @param lineWidthKey String
+         */
+        private LinkStyle(final GrandUiPrefStore preferenceStore, final String colorKey,
+                final String lineWidthKey) {
+            color = preferenceStore.getColor(colorKey);
+            lineWidth = preferenceStore.getInt(lineWidthKey);
+        }
+
+        /**
+         * @return Returns the color.
+         */
+        public Color getColor() {
+            return color;
+        }
+
+        /**
+         * @return Returns the lineWidth.
+         */
+        public int getLineWidth() {
+            return lineWidth;
+        }
+    }
+
+    /**
+     * Style of the nodes of a given type.
+     */
+    public static final class NodeStyle {
+        /**
+         * Field fgColor.
+         */
+        private final Color fgColor;
+
+        /**
+         * Field fillColor.
+         */
+        private final Color fillColor;
+
+        /**
+         * Field lineWidth.
+         */
+        private final int lineWidth;
+
+        /**
+         * Field shape.
+         */
+        private final String shape;
+
+        /**
+         * Constructor for NodeStyle.
+         * @param preferenceStore GrandUiPrefStore
+         * @param nodeType String
+         */
+        private NodeStyle(final GrandUiPrefStore preferenceStore, final String nodeType) {
+            final String keyPrefix = PreferenceKeys.NODE_PREFIX + nodeType;
+            shape = preferenceStore.getString(keyPrefix + ".shape");
+            fgColor = preferenceStore.getColor(keyPrefix + ".fgcolor");
+            fillColor = preferenceStore.getColor(keyPrefix + ".fillcolor");
+            lineWidth = preferenceStore.getInt(keyPrefix + ".linewidth");
+        }
+
+        /**
+         * @return Returns the fgColor.
+         */
+        public Color getFgColor() {
+            return fgColor;
+        }
+
+        /**
+         * @return Returns the fillColor.
+         */
+        public Color getFillColor() {
+            return fillColor;
+        }
+
+        /**
+         * @return Returns the lineWidth.
+         */
+        public int getLineWidth() {
+            return lineWidth;
+        }
+
+        /**
+         * @return Returns the shape.
+         */
+        public String getShape() {
+            return shape;
+        }
+    }
+
+    /**
+     * Node types having their own style.
+     */
+    private static final String[] NODE_TYPES = {"start", "main", "missing", "default"};
+
+    /**
+     * Field busInThreshold.
+     */
+    private final int busInThreshold;
+
+    /**
+     * Field busOutThreshold.
+     */
+    private final int busOutThreshold;
+
+    /**
+     * Field defaultLinkStyle.
+     */
+    private final LinkStyle defaultLinkStyle;
+
+    /**
+     * Field nodeStyles.
+     */
+    private final Map<String, NodeStyle> nodeStyles = new HashMap<>();
+
+    /**
+     * Field subantLinkStyle.
+     */
+    private final LinkStyle subantLinkStyle;
+
+    /**
+     * Field weakLinkStyle.
+     */
+    private final LinkStyle weakLinkStyle;
+
+    /**
+     * Takes a snapshot of the current preferences.
+     * @param preferenceStore GrandUiPrefStore
+     */
+    public RenderStyle(final GrandUiPrefStore preferenceStore) {
+        for (final String nodeType : NODE_TYPES) {
+            nodeStyles.put(nodeType, new NodeStyle(preferenceStore, nodeType));
+        }
+        defaultLinkStyle = new LinkStyle(preferenceStore, PreferenceKeys.LINK_DEFAULT_COLOR,
+                PreferenceKeys.LINK_DEFAULT_LINEWIDTH);
+        weakLinkStyle = new LinkStyle(preferenceStore, PreferenceKeys.LINK_WEAK_COLOR,
+                PreferenceKeys.LINK_WEAK_LINEWIDTH);
+        subantLinkStyle = new LinkStyle(preferenceStore, PreferenceKeys.LINK_SUBANT_COLOR,
+                PreferenceKeys.LINK_SUBANT_LINEWIDTH);
+        busInThreshold = preferenceStore.getInt(PreferenceKeys.GRAPH_BUS_IN_THRESHOLD);
+        busOutThreshold = preferenceStore.getInt(PreferenceKeys.GRAPH_BUS_OUT_THRESHOLD);
+    }
+
+    /**
+     * @return Returns the busInThreshold.
+     */
+    public int getBusInThreshold() {
+        return busInThreshold;
+    }
+
+    /**
+     * @return Returns the busOutThreshold.
+     */
+    public int getBusOutThreshold() {
+        return busOutThreshold;
+    }
+
+    /**
+     * @return Returns the defaultLinkStyle.
+     */
+    public LinkStyle getDefaultLinkStyle() {
+        return defaultLinkStyle;
+    }
+
+    /**
+     * Returns the style of a node type.
+     * @param nodeType
+     *            one of <code>start</code>, <code>main</code>,
+     *            <code>missing</code> or <code>default</code>.
+     * @return NodeStyle
+     */
+    public NodeStyle getNodeStyle(final String nodeType) {
+        return nodeStyles.get(nodeType);
+    }
+
+    /**
+     * @return Returns the subantLinkStyle.
+     */
+    public LinkStyle getSubantLinkStyle() {
+        return subantLinkStyle;
+    }
+
+    /**
+     * @return Returns the weakLinkStyle.
+     */
+    public LinkStyle getWeakLinkStyle() {
+        return weakLinkStyle;
+    }
+}
@@ -0,0 +1,192 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.ggtools.grand.ui.Application;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.draw2d.FigureUtilities;
+import org.eclipse.draw2d.geometry.Dimension;
+import org.eclipse.jface.resource.FontRegistry;
+import org.eclipse.jface.util.IPropertyChangeListener;
+import org.eclipse.jface.util.PropertyChangeEvent;
+import org.eclipse.swt.graphics.Font;
+import org.eclipse.swt.graphics.FontData;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * A cache of text extents shared by all the graph controllers. The extents
+ * are keyed by font data and text so only the names never seen before have to
+ * be measured. Those are measured in a single batch on the display thread,
+ * with the SWT fonts the nodes are drawn with.
+ * <p>
+ * The cache is cleared when the {@link Application#NODE_FONT} changes.
+ *
+ * @author Christophe Labouisse
+ */
+public final class TextMetricsCache implements IPropertyChangeListener {
+    /**
+     * Field instance.
+     */
+    private static TextMetricsCache instance;
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(TextMetricsCache.class);
+
+    /**
+     * Number of extents above which the cache is emptied.
+     * (value is {@value #MAX_ENTRIES})
+     */
+    private static final int MAX_ENTRIES = 20000;
+
+    /**
+     * Get the singleton instance.
+     *
+     * @return the instance.
+     */
+    public static synchronized TextMetricsCache getInstance() {
+        if (instance == null) {
+            instance = new TextMetricsCache();
+            final FontRegistry fontRegistry = Application.getInstance().getFontRegistry();
+            if (fontRegistry != null) {
+                fontRegistry.addListener(instance);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Field extents.
+     */
+    private final Map<String, Dimension> extents = new ConcurrentHashMap<>();
+
+    /**
+     * Private constructor for singleton.
+     */
+    private TextMetricsCache() {
+    }
+
+    /**
+     * Removes all the extents from the cache.
+     */
+    public void clear() {
+        extents.clear();
+    }
+
+    /**
+     * Returns the extents of several texts.
+     *
+     * @param fontName
+     *            the symbolic name of the font in the application's font
+     *            registry.
+     * @param texts
+     *            the texts to measure.
+     * @return a map from the texts to their extents. The returned dimensions
+     *         must not be modified.
+     */
+    public Map<String, Dimension> getTextExtents(final String fontName,
+            final Collection<String> texts) {
+        final FontData[] fontData =
+                Application.getInstance().getFontRegistry().getFontData(fontName);
+        final String fontKey = Arrays.toString(fontData) + '\u0000';
+        final Map<String, Dimension> result = new HashMap<>();
+        final List<String> missing = new ArrayList<>();
+        for (final String text : texts) {
+            final Dimension dim = extents.get(fontKey + text);
+            if (dim == null) {
+                missing.add(text);
+            } else {
+                result.put(text, dim);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Measuring " + missing.size() + " texts out of " + texts.size());
+            }
+            if (extents.size() + missing.size() > MAX_ENTRIES) {
+                extents.clear();
+            }
+            final Map<String, Dimension> measured = measure(fontName, missing);
+            for (final Map.Entry<String, Dimension> entry : measured.entrySet()) {
+                extents.put(fontKey + entry.getKey(), entry.getValue());
+            }
+            result.putAll(measured);
+        }
+        return result;
+    }
+
+    /**
+     * Method propertyChange.
+     * @param event PropertyChangeEvent
+     * @see org.eclipse.jface.util.IPropertyChangeListener#propertyChange(org.eclipse.jface.util.PropertyChangeEvent)
+     */
+    public void propertyChange(final PropertyChangeEvent event) {
+        if (Application.NODE_FONT.equals(event.getProperty())) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Node font changed, clearing text extents");
+            }
+            clear();
+        }
+    }
+
+    /**
+     * Measures texts on the display thread.
+     * @param fontName String
+     * @param texts List&lt;String&gt;
+     * @return Map&lt;String,Dimension&gt;
+     */
+    private Map<String, Dimension> measure(final String fontName, final List<String> texts) {
+        final Display current = Display.getCurrent();
+        final Map<String, Dimension> result = new HashMap<>();
+        final Runnable measurement = () -> {
+            final Font font = Application.getInstance().getFont(fontName);
+            for (final String text : texts) {
+                result.put(text, FigureUtilities.getTextExtents(text, font));
+            }
+        };
+        if (current == null) {
+            Display.getDefault().syncExec(measurement);
+        } else {
+            measurement.run();
+        }
+        return result;
+    }
+}
@@ -28,8 +28,11 @@
 
 package net.ggtools.grand.ui.graph.draw2d;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import net.ggtools.grand.ui.Application;
@@ -42,15 +45,23 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eclipse.draw2d.Cursors;
 import org.eclipse.draw2d.Graphics;
+import org.eclipse.draw2d.IFigure;
 import org.eclipse.draw2d.MouseEvent;
 import org.eclipse.draw2d.MouseListener;
 import org.eclipse.draw2d.Panel;
+import org.eclipse.draw2d.Polyline;
+import org.eclipse.draw2d.SWTGraphics;
 import org.eclipse.draw2d.ScaledGraphics;
+import org.eclipse.draw2d.TreeSearch;
 import org.eclipse.draw2d.XYLayout;
 import org.eclipse.draw2d.geometry.Dimension;
+import org.eclipse.draw2d.geometry.Point;
 import org.eclipse.draw2d.geometry.Rectangle;
 import org.eclipse.draw2d.geometry.Translatable;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Display;
 
 import sf.jzgraph.IVertex;
 
@@ -214,6 +225,24 @@ public class Draw2dGraph extends Panel implements SelectionManager {
      */
     private static final Log LOG = LogFactory.getLog(Draw2dGraph.class);
 
+    /**
+     * Field DEFAULT_DETAIL_ZOOM_THRESHOLD.
+     * (value is {@value #DEFAULT_DETAIL_ZOOM_THRESHOLD})
+     */
+    public static final float DEFAULT_DETAIL_ZOOM_THRESHOLD = 0.4f;
+
+    /**
+     * Field detailZoomThreshold: below this zoom the nodes and links are
+     * drawn without labels, decorations nor bends.
+     */
+    private float detailZoomThreshold = DEFAULT_DETAIL_ZOOM_THRESHOLD;
+
+    /**
+     * Field figureGrid: index of the children used for painting and
+     * hit-testing, <code>null</code> until next needed after a change.
+     */
+    private FigureGrid figureGrid;
+
     /**
      * Field graphController.
      */
@@ -229,11 +258,23 @@ public class Draw2dGraph extends Panel implements SelectionManager {
      */
     private final Map<String, Draw2dNode> nodeIndex = new HashMap<>();
 
+    /**
+     * Field renderedFigures: the figures created by the renderer for the
+     * nodes and links, by element key.
+     */
+    private Map<String, IFigure> renderedFigures = new HashMap<>();
+
     /**
      * Field scroller.
      */
     private CanvasScroller scroller;
 
+    /**
+     * Field tileCache: offscreen tiles used to paint the graph,
+     * <code>null</code> to paint the figures directly.
+     */
+    private TileCache tileCache;
+
     /**
      * Field zoom.
      */
@@ -249,6 +290,19 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         setZoom(1.0f);
     }
 
+    /**
+     * Drops the cached tiles as they do not show the new child.
+     * @param figure IFigure
+     * @param constraint Object
+     * @param index int
+     * @see org.eclipse.draw2d.IFigure#add(IFigure, Object, int)
+     */
+    @Override
+    public final void add(final IFigure figure, final Object constraint, final int index) {
+        super.add(figure, constraint, index);
+        clearTiles();
+    }
+
     /**
      * @param listener GraphListener
      * @see net.ggtools.grand.ui.graph.SelectionManager#addListener(GraphListener)
@@ -281,7 +335,8 @@ public class Draw2dGraph extends Panel implements SelectionManager {
      */
     public final Draw2dNode createNode(final IVertex vertex) {
         final Draw2dNode node = new Draw2dNode(this, vertex);
-        add(node, node.getBounds());
+        // Keep the nodes below the links already displayed.
+        add(node, node.getBounds(), nodeIndex.size());
         node.setFont(Application.getInstance().getFont(Application.NODE_FONT));
         node.addMouseListener(new NodeMouseListener(node));
         node.setCursor(Cursors.HAND);
@@ -372,6 +427,45 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         return d.getExpanded(-w, -h).scale(zoom).expand(w, h);
     }
 
+    /**
+     * @return Returns the zoom below which the graph is drawn with
+     *         simplified figures.
+     */
+    public final float getDetailZoomThreshold() {
+        return detailZoomThreshold;
+    }
+
+    /**
+     * Returns the nodes whose bounds intersect an area.
+     *
+     * @param area
+     *            the area in the graph coordinates, i.e.: the ones used by
+     *            {@link #getBoundsForNode(String)}.
+     * @return the nodes in z-order.
+     */
+    public final Collection<Draw2dNode> getNodesIn(final Rectangle area) {
+        final List<?> children = getChildren();
+        final BitSet found = getFigureGrid().query(area);
+        final Collection<Draw2dNode> nodes = new ArrayList<>(found.cardinality());
+        for (int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            final Object child = children.get(i);
+            if (child instanceof Draw2dNode) {
+                nodes.add((Draw2dNode) child);
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Returns the figures created by the renderer for the nodes and links
+     * of the graph.
+     *
+     * @return a map from element key to figure.
+     */
+    final Map<String, IFigure> getRenderedFigures() {
+        return renderedFigures;
+    }
+
     /**
      * @return Returns the scroller.
      */
@@ -398,6 +492,17 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         return zoom;
     }
 
+    /**
+     * Drops the figure index as the children or their bounds may have
+     * changed.
+     * @see org.eclipse.draw2d.IFigure#invalidate()
+     */
+    @Override
+    public final void invalidate() {
+        super.invalidate();
+        figureGrid = null;
+    }
+
     /**
      * Method removeNotify.
      * @see org.eclipse.draw2d.IFigure#removeNotify()
@@ -412,6 +517,23 @@ public class Draw2dGraph extends Panel implements SelectionManager {
             removeMouseListener(graphMouseListener);
         }
         setFocusTraversable(false);
+        clearTiles();
+    }
+
+    /**
+     * Drops the cached tiles as they show the removed child.
+     * The figure is also removed from the node index but not from the
+     * renderer's figures, which are managed by the renderer itself.
+     * @param figure IFigure
+     * @see org.eclipse.draw2d.IFigure#remove(IFigure)
+     */
+    @Override
+    public final void remove(final IFigure figure) {
+        super.remove(figure);
+        if (figure instanceof Draw2dNode) {
+            nodeIndex.remove(((Draw2dNode) figure).getName(), figure);
+        }
+        clearTiles();
     }
 
     /**
@@ -450,6 +572,45 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         }
     }
 
+    /**
+     * Drops the cached tiles showing an area whose appearance has changed,
+     * e.g.: a node being selected.
+     *
+     * @param area
+     *            the area in the graph coordinates.
+     */
+    final void invalidateTiles(final Rectangle area) {
+        if (tileCache != null) {
+            tileCache.invalidate(area);
+        }
+    }
+
+    /**
+     * Sets the zoom below which nodes are drawn without their labels and
+     * links as straight lines without decorations.
+     *
+     * @param detailZoomThreshold
+     *            the threshold, 0 to always draw the full figures.
+     */
+    public final void setDetailZoomThreshold(final float detailZoomThreshold) {
+        if (detailZoomThreshold != this.detailZoomThreshold) {
+            this.detailZoomThreshold = detailZoomThreshold;
+            clearTiles();
+            repaint();
+        }
+    }
+
+    /**
+     * Sets the figures created by the renderer for the nodes and links of
+     * the graph.
+     *
+     * @param renderedFigures
+     *            a map from element key to figure.
+     */
+    final void setRenderedFigures(final Map<String, IFigure> renderedFigures) {
+        this.renderedFigures = renderedFigures;
+    }
+
     /**
      * @param scroller
      *            The scroller to set.
@@ -458,6 +619,30 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         this.scroller = scroller;
     }
 
+    /**
+     * Enables or disables painting the graph through a cache of offscreen
+     * tiles. Tiles are kept for each zoom level so scrolling and zooming
+     * back to a previous level only copies images.
+     *
+     * @param maxBytes
+     *            the maximum amount of native memory used by the tiles, 0
+     *            to disable the cache.
+     */
+    public final void setTileCacheSize(final long maxBytes) {
+        if (maxBytes <= 0) {
+            if (tileCache != null) {
+                tileCache.clear();
+                tileCache = null;
+                repaint();
+            }
+        } else if (tileCache == null) {
+            tileCache = new TileCache(maxBytes);
+            repaint();
+        } else {
+            tileCache.setMaxBytes(maxBytes);
+        }
+    }
+
     /**
      * @param graphController
      *            The controller to set.
@@ -496,6 +681,21 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         super.translateToParent(t);
     }
 
+    /**
+     * Updates an existing node from a new layout of its vertex.
+     *
+     * @param node
+     *            the node to update.
+     * @param vertex
+     *            the vertex to display.
+     */
+    final void updateNode(final Draw2dNode node, final IVertex vertex) {
+        nodeIndex.remove(node.getName(), node);
+        node.update(vertex);
+        setConstraint(node, node.getBounds());
+        nodeIndex.put(node.getName(), node);
+    }
+
     /**
      * Method toggleSelection.
      * @param node Draw2dNode
@@ -520,6 +720,12 @@ public class Draw2dGraph extends Panel implements SelectionManager {
             return;
         }
 
+        if (tileCache != null) {
+            paintTiles(graphics);
+            graphics.restoreState();
+            return;
+        }
+
         boolean optimizeClip = (getBorder() == null) || getBorder().isOpaque();
 
         final ScaledGraphics g = new ScaledGraphics(graphics);
@@ -537,6 +743,217 @@ public class Draw2dGraph extends Panel implements SelectionManager {
         graphics.restoreState();
     }
 
+    /**
+     * Looks for the topmost child accepted by the search among the ones
+     * indexed at the location rather than checking every child.
+     * @param x int
+     * @param y int
+     * @param search TreeSearch
+     * @return IFigure
+     * @see org.eclipse.draw2d.Figure#findDescendantAtExcluding(int, int, TreeSearch)
+     */
+    @Override
+    protected final IFigure findDescendantAtExcluding(final int x, final int y,
+            final TreeSearch search) {
+        final Point location = toClientLocation(x, y);
+        if (location == null) {
+            return null;
+        }
+        final List<?> children = getChildren();
+        final BitSet candidates = getFigureGrid().query(new Rectangle(location.x, location.y, 1, 1));
+        for (int i = candidates.length() - 1; i >= 0; i = candidates.previousSetBit(i - 1)) {
+            final IFigure child = (IFigure) children.get(i);
+            if (child.isVisible()) {
+                final IFigure found = child.findFigureAt(location.x, location.y, search);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks for the topmost child receiving the mouse events among the ones
+     * indexed at the location rather than checking every child.
+     * @param x int
+     * @param y int
+     * @return IFigure
+     * @see org.eclipse.draw2d.Figure#findMouseEventTargetInDescendantsAt(int, int)
+     */
+    @Override
+    protected final IFigure findMouseEventTargetInDescendantsAt(final int x, final int y) {
+        final Point location = toClientLocation(x, y);
+        if (location == null) {
+            return null;
+        }
+        final List<?> children = getChildren();
+        final BitSet candidates = getFigureGrid().query(new Rectangle(location.x, location.y, 1, 1));
+        for (int i = candidates.length() - 1; i >= 0; i = candidates.previousSetBit(i - 1)) {
+            final IFigure child = (IFigure) children.get(i);
+            if (child.isVisible() && child.isEnabled()
+                    && child.containsPoint(location.x, location.y)) {
+                return child.findMouseEventTargetAt(location.x, location.y);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Paints only the children intersecting the clip area, looking them up
+     * in the figure index rather than checking each of them.
+     * @param graphics Graphics
+     * @see org.eclipse.draw2d.Figure#paintChildren(Graphics)
+     */
+    @Override
+    protected final void paintChildren(final Graphics graphics) {
+        final List<?> children = getChildren();
+        final Rectangle clip = graphics.getClip(new Rectangle());
+        final BitSet visible = getFigureGrid().query(clip);
+        final boolean simplified = zoom < detailZoomThreshold;
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Painting " + visible.cardinality() + " of " + children.size()
+                    + " figures" + (simplified ? " (simplified)" : ""));
+        }
+        for (int i = visible.nextSetBit(0); i >= 0; i = visible.nextSetBit(i + 1)) {
+            final IFigure child = (IFigure) children.get(i);
+            if (child.isVisible()) {
+                graphics.clipRect(child.getBounds());
+                if (simplified) {
+                    paintSimplified(graphics, child);
+                } else {
+                    child.paint(graphics);
+                }
+                graphics.restoreState();
+            }
+        }
+    }
+
+    /**
+     * Paints the area to refresh by copying the tiles covering it,
+     * rendering the missing ones.
+     *
+     * @param graphics Graphics
+     */
+    private void paintTiles(final Graphics graphics) {
+        final Rectangle clientArea = getBounds().getShrinked(getInsets());
+        graphics.clipRect(clientArea);
+        final Rectangle clip = graphics.getClip(new Rectangle()).intersect(clientArea);
+        if (clip.isEmpty()) {
+            return;
+        }
+        final int size = TileCache.TILE_SIZE;
+        final int firstColumn = Math.floorDiv(clip.x - clientArea.x, size);
+        final int lastColumn = Math.floorDiv(clip.x + clip.width - 1 - clientArea.x, size);
+        final int firstRow = Math.floorDiv(clip.y - clientArea.y, size);
+        final int lastRow = Math.floorDiv(clip.y + clip.height - 1 - clientArea.y, size);
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                Image tile = tileCache.get(zoom, column, row);
+                if (tile == null) {
+                    tile = renderTile(column, row);
+                    tileCache.put(zoom, column, row, tile);
+                }
+                graphics.drawImage(tile, clientArea.x + column * size,
+                        clientArea.y + row * size);
+            }
+        }
+    }
+
+    /**
+     * Renders a tile of the graph at the current zoom in an offscreen image.
+     *
+     * @param column int
+     * @param row int
+     * @return Image
+     */
+    private Image renderTile(final int column, final int row) {
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Rendering tile " + column + "x" + row + " at zoom " + zoom);
+        }
+        final int size = TileCache.TILE_SIZE;
+        final Image image = new Image(Display.getCurrent(), size, size);
+        final GC gc = new GC(image);
+        final SWTGraphics tileGraphics = new SWTGraphics(gc);
+        try {
+            tileGraphics.setBackgroundColor(getBackgroundColor());
+            tileGraphics.fillRectangle(0, 0, size, size);
+            tileGraphics.setForegroundColor(getForegroundColor());
+            tileGraphics.setFont(getFont());
+            tileGraphics.translate(-column * size, -row * size);
+            final ScaledGraphics g = new ScaledGraphics(tileGraphics);
+            g.scale(zoom);
+            g.pushState();
+            paintChildren(g);
+            g.popState();
+            g.dispose();
+        } finally {
+            tileGraphics.dispose();
+            gc.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Disposes all the cached tiles. Called whenever the figures may have
+     * changed, e.g.: after the graph has been rendered again in place.
+     */
+    final void clearTiles() {
+        if (tileCache != null) {
+            tileCache.clear();
+        }
+    }
+
+    /**
+     * Returns the index of the children, building it if needed.
+     *
+     * @return FigureGrid
+     */
+    private FigureGrid getFigureGrid() {
+        if (figureGrid == null) {
+            figureGrid = new FigureGrid(getChildren());
+        }
+        return figureGrid;
+    }
+
+    /**
+     * Converts a location from the parent's coordinates to the children's
+     * ones.
+     *
+     * @param x int
+     * @param y int
+     * @return the converted location or <code>null</code> if it is outside
+     *         of the client area.
+     */
+    private Point toClientLocation(final int x, final int y) {
+        final Point location = new Point(x, y);
+        translateFromParent(location);
+        if (!getClientArea(new Rectangle()).contains(location)) {
+            return null;
+        }
+        return location;
+    }
+
+    /**
+     * Paints a child with a simplified geometry: the nodes without their
+     * labels and the links as a straight line between their ends.
+     *
+     * @param graphics Graphics
+     * @param child IFigure
+     */
+    private void paintSimplified(final Graphics graphics, final IFigure child) {
+        if (child instanceof Draw2dNode) {
+            ((Draw2dNode) child).paintSimplified(graphics);
+        } else if (child instanceof Polyline) {
+            final Polyline line = (Polyline) child;
+            graphics.setForegroundColor(line.getForegroundColor());
+            graphics.setLineWidth(1);
+            graphics.drawLine(line.getStart(), line.getEnd());
+        } else {
+            child.paint(graphics);
+        }
+    }
+
     /**
      * @return boolean
      * @see org.eclipse.draw2d.Figure#useLocalCoordinates()
@@ -32,9 +32,12 @@ import java.awt.geom.AffineTransform;
 import java.awt.geom.FlatteningPathIterator;
 import java.awt.geom.PathIterator;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import net.ggtools.grand.ui.Application;
+import net.ggtools.grand.ui.graph.CachedRoute;
 import net.ggtools.grand.ui.graph.DotGraphAttributes;
 
 import org.apache.commons.logging.Log;
@@ -74,6 +77,31 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
      */
     private static final Log LOG = LogFactory.getLog(Draw2dGraphRenderer.class);
 
+    /**
+     * Field EVICT_TOOLTIPS: drop the node and link tooltips once they are
+     * hidden instead of keeping them for the graph's lifetime.
+     * (value is {@value #EVICT_TOOLTIPS})
+     */
+    private static final boolean EVICT_TOOLTIPS = true;
+
+    /**
+     * Field NODE_KEY_PREFIX.
+     * (value is {@value #NODE_KEY_PREFIX})
+     */
+    private static final String NODE_KEY_PREFIX = "node:";
+
+    /**
+     * Field BUS_KEY_PREFIX.
+     * (value is {@value #BUS_KEY_PREFIX})
+     */
+    private static final String BUS_KEY_PREFIX = "bus:";
+
+    /**
+     * Field LINK_KEY_PREFIX.
+     * (value is {@value #LINK_KEY_PREFIX})
+     */
+    private static final String LINK_KEY_PREFIX = "link:";
+
     /**
      * Method render.
      * @param dotGraph IDotGraph
@@ -95,6 +123,11 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
 
     /**
      * Fill an existing graph with a IDotGraph.
+     * <p>
+     * Nodes and links are matched by name with the ones already displayed
+     * whose figures are updated in place. Figures are only created for the
+     * new elements and removed for the ones no longer in the graph.
+     * </p>
      *
      * @param contents Draw2dGraph
      * @param dotGraph IDotGraph
@@ -102,7 +135,6 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
      */
     public final Draw2dGraph render(final Draw2dGraph contents,
             final IDotGraph dotGraph) {
-        contents.removeAll();
         return createGraph(dotGraph, contents);
     }
 
@@ -113,17 +145,54 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
      */
     private Draw2dGraph createGraph(final IDotGraph dotGraph,
             final Draw2dGraph contents) {
+        final Map<String, IFigure> previousFigures = contents.getRenderedFigures();
+        final Map<String, IFigure> renderedFigures = new HashMap<>();
+        final int previousCount = previousFigures.size();
+
         for (final Object node : dotGraph.allVertices()) {
-            buildNodeFigure(contents, (IVertex) node);
+            buildNodeFigure(contents, (IVertex) node, previousFigures, renderedFigures);
         }
 
+        final Map<String, Integer> linkOccurrences = new HashMap<>();
         for (final Object edge : dotGraph.allEdges()) {
-            buildEdgeFigure(contents, (IEdge) edge);
+            final String key = getLinkKey((IEdge) edge, linkOccurrences);
+            renderedFigures.put(key, buildEdgeFigure(contents, (IEdge) edge,
+                    (PolylineConnection) previousFigures.remove(key)));
+        }
+
+        for (final IFigure staleFigure : previousFigures.values()) {
+            contents.remove(staleFigure);
         }
+        contents.setRenderedFigures(renderedFigures);
+        // Reused figures may have been updated without changing the
+        // children, the cached tiles would still show them as they were.
+        contents.clearTiles();
 
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Rendered " + renderedFigures.size() + " figures, reused "
+                    + (previousCount - previousFigures.size()) + ", removed "
+                    + previousFigures.size());
+        }
         return contents;
     }
 
+    /**
+     * Returns the key identifying a link across renderings. Several links
+     * between the same nodes are told apart by their order.
+     *
+     * @param edge
+     *            the link.
+     * @param occurrences
+     *            the number of links already seen for each key.
+     * @return String
+     */
+    private static String getLinkKey(final IEdge edge, final Map<String, Integer> occurrences) {
+        final String key = LINK_KEY_PREFIX + edge.getTail().getName() + "->"
+                + edge.getHead().getName() + "#" + edge.getName();
+        final int occurrence = occurrences.merge(key, 1, Integer::sum);
+        return (occurrence == 1) ? key : key + "/" + occurrence;
+    }
+
     /**
      * @param coords float[]
      * @param bends List&lt;AbsoluteBendpoint&gt;
@@ -150,21 +219,47 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
     }
 
     /**
+     * Creates or updates a connection following a route.
+     *
      * @param contents IFigure
+     * @param existing the connection to update or <code>null</code> to
+     *            create a new one
      * @param name String
-     * @param route DotRoute
+     * @param route either a {@link DotRoute} or a {@link CachedRoute}
      * @return PolylineConnection
      */
     private PolylineConnection addConnectionFromRoute(final IFigure contents,
-            final String name, final DotRoute route) {
+            final PolylineConnection existing, final String name, final Object route) {
+        final PathIterator pathIterator;
+        final Point endPoint;
+        if (route instanceof CachedRoute) {
+            final CachedRoute cachedRoute = (CachedRoute) route;
+            pathIterator = cachedRoute.getPath().getPathIterator(new AffineTransform());
+            if (cachedRoute.getEndPt() != null) {
+                endPoint = new PrecisionPoint(cachedRoute.getEndPt().getX(),
+                        cachedRoute.getEndPt().getY());
+            } else {
+                endPoint = null;
+            }
+        } else {
+            final DotRoute dotRoute = (DotRoute) route;
+            pathIterator = dotRoute.getPath().getPathIterator(new AffineTransform());
+            if (dotRoute.getEndPt() != null) {
+                endPoint = new PrecisionPoint(dotRoute.getEndPt().getX(),
+                        dotRoute.getEndPt().getY());
+            } else {
+                endPoint = null;
+            }
+        }
+
         final float[] coords = new float[6];
         final List<AbsoluteBendpoint> bends = new ArrayList<>();
         boolean isFirstPoint = true;
         final Point min = new Point(Integer.MAX_VALUE, Integer.MAX_VALUE);
         final Point max = new Point(Integer.MIN_VALUE, Integer.MIN_VALUE);
 
-        for (final PathIterator ite = new FlatteningPathIterator(route.getPath().getPathIterator(
-                new AffineTransform()), PATH_ITERATOR_FLATNESS); !ite.isDone(); ite.next()) {
+        for (final PathIterator ite = new FlatteningPathIterator(pathIterator,
+                PATH_ITERATOR_FLATNESS); !ite.isDone(); ite.next()) {
             final int segType = ite.currentSegment(coords);
 
             switch (segType) {
@@ -189,12 +284,13 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
         }
 
         final Rectangle bounds = new Rectangle(min, max);
-        final PolylineConnection conn = new PolylineConnection();
+        final PolylineConnection conn =
+                (existing == null) ? new PolylineConnection() : existing;
 
         final Point sourcePoint = bends.remove(0);
         final Point targetPoint;
-        if (route.getEndPt() != null) {
-            targetPoint = new PrecisionPoint(route.getEndPt().getX(), route.getEndPt().getY());
+        if (endPoint != null) {
+            targetPoint = endPoint;
         } else {
             targetPoint = bends.remove(bends.size() - 1);
         }
@@ -208,23 +304,41 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
             conn.setRoutingConstraint(bends);
         }
 
+        Label label = null;
+        for (final Object child : conn.getChildren()) {
+            if (child instanceof Label) {
+                label = (Label) child;
+            }
+        }
+
         if (name != null) {
-            final Label label = new Label(name);
-            label.setOpaque(true);
-            label.setBackgroundColor(ColorConstants.buttonLightest);
-            label.setBorder(new LineBorder());
-            label.setFont(Application.getInstance().getFont(Application.LINK_FONT));
             final ConnectionLocator locator =
                     new MidpointLocator(conn, bends.size() / 2);
             locator.setRelativePosition(PositionConstants.CENTER);
+            if (label == null) {
+                label = new Label(name);
+                label.setOpaque(true);
+                label.setBackgroundColor(ColorConstants.buttonLightest);
+                label.setBorder(new LineBorder());
+                label.setFont(Application.getInstance().getFont(Application.LINK_FONT));
+                conn.add(label, locator);
+            } else {
+                label.setText(name);
+                conn.setConstraint(label, locator);
+            }
             // Includes the label in the connection bounds.
             // Worst case scenario, the label is on the connection edge.
             final Dimension labelSize = label.getPreferredSize();
             bounds.expand(labelSize.width, labelSize.height);
-            conn.add(label, locator);
+        } else if (label != null) {
+            conn.remove(label);
         }
 
-        contents.add(conn, bounds);
+        if (existing == null) {
+            contents.add(conn, bounds);
+        } else {
+            contents.setConstraint(conn, bounds);
+        }
 
         return conn;
     }
@@ -236,13 +350,18 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
      *            the parent figure to add the edge to
      * @param edge
      *            the edge
+     * @param existing
+     *            the figure displaying the edge in the previous rendering,
+     *            <code>null</code> if none
+     * @return the figure for the edge
      */
-    private void buildEdgeFigure(final IFigure contents, final IEdge edge) {
+    private PolylineConnection buildEdgeFigure(final IFigure contents, final IEdge edge,
+            final PolylineConnection existing) {
         if (LOG.isTraceEnabled()) {
             LOG.trace("Building edge from " + edge.getTail().getName() + " to "
                     + edge.getHead().getName());
         }
-        final DotRoute route = (DotRoute) edge.getAttr(POSITION_ATTR);
+        final Object route = edge.getAttr(POSITION_ATTR);
 
         String name = edge.getName();
         if (name.isEmpty()) {
@@ -250,21 +369,25 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
         }
 
         final PolylineConnection conn =
-                addConnectionFromRoute(contents, name, route);
+                addConnectionFromRoute(contents, existing, name, route);
 
-        if (edge.getAttr(DRAW2DFGCOLOR_ATTR) != null) {
-            conn.setForegroundColor((Color) edge.getAttr(DRAW2DFGCOLOR_ATTR));
-        }
+        // A null color reverts a reused connection to the graph's one.
+        conn.setForegroundColor((Color) edge.getAttr(DRAW2DFGCOLOR_ATTR));
 
         if (edge.getAttr(DRAW2DLINEWIDTH_ATTR) != null) {
             conn.setLineWidth(edge.getAttrInt(DRAW2DLINEWIDTH_ATTR));
+        } else if (existing != null) {
+            conn.setLineWidth(1);
         }
 
-        final PolygonDecoration dec = new PolygonDecoration();
-        conn.setTargetDecoration(dec);
+        if (existing == null) {
+            final PolygonDecoration dec = new PolygonDecoration();
+            conn.setTargetDecoration(dec);
+            conn.setCursor(Cursors.HAND);
+        }
 
-        conn.setToolTip(new LinkTooltip(edge));
-        conn.setCursor(Cursors.HAND);
+        conn.setToolTip(LazyTooltip.forEdge(edge, EVICT_TOOLTIPS));
+        return conn;
     }
 
     /**
@@ -274,33 +397,47 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
      *            the parent Figure to add the node to
      * @param node
      *            the node to add
+     * @param previousFigures
+     *            the figures of the previous rendering, the reused ones
+     *            are removed from it
+     * @param renderedFigures
+     *            the figures of this rendering, the node's ones are added
+     *            to it
      */
     private void buildNodeFigure(final Draw2dGraph contents,
-            final IVertex node) {
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("Building node " + node.getName());
+            final IVertex node, final Map<String, IFigure> previousFigures,
+            final Map<String, IFigure> renderedFigures) {
+        final String key = NODE_KEY_PREFIX + node.getName();
+        Draw2dNode polygon = (Draw2dNode) previousFigures.remove(key);
+        if (polygon == null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Building node " + node.getName());
+            }
+            polygon = contents.createNode(node);
+        } else {
+            contents.updateNode(polygon, node);
         }
-        final Draw2dNode polygon = contents.createNode(node);
-        polygon.setToolTip(new NodeTooltip(node));
+        polygon.setToolTip(LazyTooltip.forVertex(node, EVICT_TOOLTIPS));
+        renderedFigures.put(key, polygon);
 
         if (node.hasAttr("inbus")) {
             final PolylineConnection conn = createBusConnexion(contents, node,
-                    ColorConstants.red, "inbus", "bus to");
+                    ColorConstants.red, "inbus", "bus to", previousFigures, renderedFigures);
             conn.setLineWidth(2);
         }
         if (node.hasAttr("outbus")) {
             final PolylineConnection conn = createBusConnexion(contents, node,
-                    ColorConstants.blue, "outbus", "bus from");
+                    ColorConstants.blue, "outbus", "bus from", previousFigures, renderedFigures);
             conn.setLineWidth(2);
         }
         if (node.hasAttr("tobus")) {
             @SuppressWarnings("unused")
             final PolylineConnection conn = createBusConnexion(contents, node,
-                    ColorConstants.blue, "tobus", "bus from");
+                    ColorConstants.blue, "tobus", "bus from", previousFigures, renderedFigures);
         }
         if (node.hasAttr("frombus")) {
             final PolylineConnection conn = createBusConnexion(contents, node,
-                    ColorConstants.red, "frombus", "bus to");
+                    ColorConstants.red, "frombus", "bus to", previousFigures, renderedFigures);
             final PolygonDecoration dec = new PolygonDecoration();
             conn.setTargetDecoration(dec);
         }
@@ -312,19 +449,30 @@ public class Draw2dGraphRenderer implements DotGraphAttributes {
      * @param color Color
      * @param busLabel String
      * @param busId String String
+     * @param previousFigures Map&lt;String, IFigure&gt;
+     * @param renderedFigures Map&lt;String, IFigure&gt;
      * @return PolylineConnection
      */
     private PolylineConnection createBusConnexion(final Draw2dGraph contents,
             final IVertex node, final Color color,
-            final String busId, final String busLabel) {
-        final PolylineConnection conn = addConnectionFromRoute(contents, null,
-                (DotRoute) node.getAttr(busId));
+            final String busId, final String busLabel,
+            final Map<String, IFigure> previousFigures,
+            final Map<String, IFigure> renderedFigures) {
+        final String key = BUS_KEY_PREFIX + node.getName() + "#" + busId;
+        final PolylineConnection existing = (PolylineConnection) previousFigures.remove(key);
+        if (existing != null) {
+            renderedFigures.put(key, existing);
+            return addConnectionFromRoute(contents, existing, null, node.getAttr(busId));
+        }
+        final PolylineConnection conn = addConnectionFromRoute(contents, null, null,
+                node.getAttr(busId));
         conn.setForegroundColor(color);
         contents.add(conn, conn.getBounds());
         final Label label = new Label(busLabel + " " + node.getName(),
                 Application.getInstance().getImage(Application.LINK_ICON));
         label.setFont(Application.getInstance().getBoldFont(Application.TOOLTIP_FONT));
         conn.setToolTip(label);
+        renderedFigures.put(key, conn);
         return conn;
     }
 
@@ -28,10 +28,10 @@
 
 package net.ggtools.grand.ui.graph.draw2d;
 
+import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.FlatteningPathIterator;
 import java.awt.geom.PathIterator;
-import java.awt.geom.Rectangle2D;
 
 import net.ggtools.grand.graph.Node;
 import net.ggtools.grand.ui.graph.DotGraphAttributes;
@@ -40,8 +40,10 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.eclipse.draw2d.BorderLayout;
 import org.eclipse.draw2d.FigureUtilities;
+import org.eclipse.draw2d.Graphics;
 import org.eclipse.draw2d.Label;
 import org.eclipse.draw2d.Polygon;
+import org.eclipse.draw2d.geometry.PointList;
 import org.eclipse.draw2d.geometry.PrecisionPoint;
 import org.eclipse.swt.graphics.Color;
 
@@ -62,7 +64,6 @@ public class Draw2dNode extends Polygon implements DotGraphAttributes {
     /**
      * Field graph.
      */
-    @SuppressWarnings("unused")
     private final Draw2dGraph graph;
 
     /**
@@ -73,17 +74,17 @@ public class Draw2dNode extends Polygon implements DotGraphAttributes {
     /**
      * Field name.
      */
-    private final String name;
+    private String name;
 
     /**
      * Field nodeBgColor.
      */
-    private final Color nodeBgColor;
+    private Color nodeBgColor;
 
     /**
      * Field nodeFgColor.
      */
-    private final Color nodeFgColor;
+    private Color nodeFgColor;
 
     /**
      * Field selected.
@@ -93,73 +94,33 @@ public class Draw2dNode extends Polygon implements DotGraphAttributes {
     /**
      * Field selectedBgColor.
      */
-    private final Color selectedBgColor;
+    private Color selectedBgColor;
 
     /**
      * Field vertex.
      */
-    private final IVertex vertex;
+    private IVertex vertex;
 
     /**
      * Constructor for Draw2dNode.
      * @param graph Draw2dGraph
      * @param vertex IVertex
      */
-    @SuppressWarnings("unused")
     public Draw2dNode(final Draw2dGraph graph, final IVertex vertex) {
         super();
 
-        this.vertex = vertex;
         selected = false;
         this.graph = graph;
 
-        nodeFgColor = (Color) vertex.getAttr(DRAW2DFGCOLOR_ATTR);
-        nodeBgColor = (Color) vertex.getAttr(DRAW2DFILLCOLOR_ATTR);
-        selectedBgColor = FigureUtilities.darker(nodeBgColor);
-
-        final Rectangle2D rect = (Rectangle2D) vertex.getAttr(_BOUNDS_ATTR);
-        final int x = (int) rect.getX();
-        final int y = (int) rect.getY();
-        final int width = (int) rect.getWidth();
-        final int height = (int) rect.getHeight();
-
-        setForegroundColor(nodeFgColor);
-        setBackgroundColor(nodeBgColor);
-        setLineWidth(vertex.getAttrInt(DRAW2DLINEWIDTH_ATTR));
         setOpaque(true);
         // Polygon extends Polyline that does setFill(false) since GEF 3.1
         setFill(true);
 
-        final GraphShape shape = (GraphShape) vertex.getAttr(_SHAPE_ATTR);
-        final float[] coords = new float[6];
-        for (final PathIterator ite =
-                new FlatteningPathIterator(shape.getPathIterator(new AffineTransform()), PATH_ITERATOR_FLATNESS);
-                !ite.isDone(); ite.next()) {
-            final int segType = ite.currentSegment(coords);
-
-            switch (segType) {
-            case PathIterator.SEG_MOVETO:
-            case PathIterator.SEG_LINETO:
-                addPoint(new PrecisionPoint(coords[0], coords[1]));
-                break;
-
-            case PathIterator.SEG_CLOSE:
-                // Do nothing but no error
-                break;
-
-            default:
-                LOG.error("Unexpected segment type " + segType);
-                break;
-            }
-        }
-
         label = new Label();
-
-        name = vertex.getAttrString(LABEL_ATTR);
-        label.setText(name);
-        label.setForegroundColor(nodeFgColor);
         setLayoutManager(new BorderLayout());
         add(label, BorderLayout.CENTER);
+
+        update(vertex);
     }
 
     /**
@@ -204,10 +165,82 @@ public class Draw2dNode extends Polygon implements DotGraphAttributes {
             } else {
                 setBackgroundColor(nodeBgColor);
             }
+            if (graph != null) {
+                graph.invalidateTiles(getBounds());
+            }
             repaint();
         }
     }
 
+    /**
+     * Paints the node outline without its label, used when the graph is
+     * zoomed out too much for the text to be readable.
+     *
+     * @param graphics
+     *            the graphics to paint on.
+     */
+    public final void paintSimplified(final Graphics graphics) {
+        graphics.setBackgroundColor(getBackgroundColor());
+        graphics.fillPolygon(getPoints());
+        graphics.setForegroundColor(getForegroundColor());
+        graphics.drawPolygon(getPoints());
+    }
+
+    /**
+     * Updates the node from a new layout of its vertex, keeping its
+     * selection state.
+     *
+     * @param newVertex
+     *            the vertex to display.
+     */
+    final void update(final IVertex newVertex) {
+        vertex = newVertex;
+
+        nodeFgColor = (Color) vertex.getAttr(DRAW2DFGCOLOR_ATTR);
+        nodeBgColor = (Color) vertex.getAttr(DRAW2DFILLCOLOR_ATTR);
+        selectedBgColor = FigureUtilities.darker(nodeBgColor);
+
+        setForegroundColor(nodeFgColor);
+        setBackgroundColor(selected ? selectedBgColor : nodeBgColor);
+        setLineWidth(vertex.getAttrInt(DRAW2DLINEWIDTH_ATTR));
+
+        // The shape is a plain java.awt.Shape when read from the layout cache.
+        final Object shape = vertex.getAttr(_SHAPE_ATTR);
+        final PathIterator shapeIterator;
+        if (shape instanceof GraphShape) {
+            shapeIterator = ((GraphShape) shape).getPathIterator(new AffineTransform());
+        } else {
+            shapeIterator = ((Shape) shape).getPathIterator(new AffineTransform());
+        }
+        final PointList points = new PointList();
+        final float[] coords = new float[6];
+        for (final PathIterator ite =
+                new FlatteningPathIterator(shapeIterator, PATH_ITERATOR_FLATNESS);
+                !ite.isDone(); ite.next()) {
+            final int segType = ite.currentSegment(coords);
+
+            switch (segType) {
+            case PathIterator.SEG_MOVETO:
+            case PathIterator.SEG_LINETO:
+                points.addPoint(new PrecisionPoint(coords[0], coords[1]));
+                break;
+
+            case PathIterator.SEG_CLOSE:
+                // Do nothing but no error
+                break;
+
+            default:
+                LOG.error("Unexpected segment type " + segType);
+                break;
+            }
+        }
+        setPoints(points);
+
+        name = vertex.getAttrString(LABEL_ATTR);
+        label.setText(name);
+        label.setForegroundColor(nodeFgColor);
+    }
+
     /**
      * Method toString.
      * @return String
@@ -0,0 +1,190 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph.draw2d;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.geometry.Rectangle;
+
+/**
+ * A uniform grid indexing the children of a figure by their bounds.
+ * <p>
+ * Each child is registered in every cell its bounds overlap and is
+ * identified by its position in the children list so queries return
+ * the figures in z-order. Figures covering too many cells, typically
+ * long links, are kept in a separate list checked on every query.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+final class FigureGrid {
+    /**
+     * A growable list of child positions.
+     */
+    private static final class Cell {
+        /**
+         * Field members.
+         */
+        private int[] members = new int[4];
+
+        /**
+         * Field size.
+         */
+        private int size;
+
+        /**
+         * Method add.
+         * @param index int
+         */
+        void add(final int index) {
+            if (size == members.length) {
+                final int[] newMembers = new int[size * 2];
+                System.arraycopy(members, 0, newMembers, 0, size);
+                members = newMembers;
+            }
+            members[size++] = index;
+        }
+    }
+
+    /**
+     * Field CELL_SIZE.
+     * (value is {@value #CELL_SIZE})
+     */
+    static final int CELL_SIZE = 256;
+
+    /**
+     * Field MAX_CELLS_PER_FIGURE.
+     * (value is {@value #MAX_CELLS_PER_FIGURE})
+     */
+    private static final int MAX_CELLS_PER_FIGURE = 64;
+
+    /**
+     * Field bounds.
+     */
+    private final Rectangle[] bounds;
+
+    /**
+     * Field cells.
+     */
+    private final Map<Long, Cell> cells = new HashMap<>();
+
+    /**
+     * Field oversized.
+     */
+    private final Cell oversized = new Cell();
+
+    /**
+     * Creates an index of the figures.
+     *
+     * @param figures
+     *            the figures to index, usually the children of a figure.
+     */
+    FigureGrid(final List<?> figures) {
+        bounds = new Rectangle[figures.size()];
+        for (int i = 0; i < bounds.length; i++) {
+            final Rectangle figureBounds = ((IFigure) figures.get(i)).getBounds().getCopy();
+            bounds[i] = figureBounds;
+            final int minX = cellOf(figureBounds.x);
+            final int maxX = cellOf(figureBounds.x + figureBounds.width);
+            final int minY = cellOf(figureBounds.y);
+            final int maxY = cellOf(figureBounds.y + figureBounds.height);
+            if ((long) (maxX - minX + 1) * (maxY - minY + 1) > MAX_CELLS_PER_FIGURE) {
+                oversized.add(i);
+                continue;
+            }
+            for (int cx = minX; cx <= maxX; cx++) {
+                for (int cy = minY; cy <= maxY; cy++) {
+                    cells.computeIfAbsent(key(cx, cy), k -> new Cell()).add(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the positions of the figures whose bounds intersect an area.
+     *
+     * @param area
+     *            the area to look for, in the coordinates of the indexed
+     *            figures.
+     * @return a set of positions in the figure list.
+     */
+    BitSet query(final Rectangle area) {
+        final BitSet result = new BitSet(bounds.length);
+        collect(oversized, area, result);
+        final int maxX = cellOf(area.x + area.width);
+        final int maxY = cellOf(area.y + area.height);
+        for (int cx = cellOf(area.x); cx <= maxX; cx++) {
+            for (int cy = cellOf(area.y); cy <= maxY; cy++) {
+                final Cell cell = cells.get(key(cx, cy));
+                if (cell != null) {
+                    collect(cell, area, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the members of a cell intersecting an area to a result set.
+     *
+     * @param cell Cell
+     * @param area Rectangle
+     * @param result BitSet
+     */
+    private void collect(final Cell cell, final Rectangle area, final BitSet result) {
+        for (int i = 0; i < cell.size; i++) {
+            final int index = cell.members[i];
+            if (!result.get(index) && bounds[index].intersects(area)) {
+                result.set(index);
+            }
+        }
+    }
+
+    /**
+     * Method cellOf.
+     * @param coord int
+     * @return int
+     */
+    private static int cellOf(final int coord) {
+        return Math.floorDiv(coord, CELL_SIZE);
+    }
+
+    /**
+     * Method key.
+     * @param cx int
+     * @param cy int
+     * @return long
+     */
+    private static long key(final int cx, final int cy) {
+        return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+    }
+}
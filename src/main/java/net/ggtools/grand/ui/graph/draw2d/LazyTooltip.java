@@ -0,0 +1,153 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph.draw2d;
+
+import java.util.function.Supplier;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.draw2d.Figure;
+import org.eclipse.draw2d.IFigure;
+import org.eclipse.draw2d.StackLayout;
+
+import sf.jzgraph.IEdge;
+import sf.jzgraph.IVertex;
+
+/**
+ * A placeholder tooltip building the actual tooltip figure only when it
+ * gets displayed.
+ * <p>
+ * Draw2d adds the tooltip of the hovered figure to the contents of its
+ * tooltip shell, so the real tooltip is created from the graph element
+ * in {@link #addNotify()}. When the evict flag is set the contents are
+ * dropped again as soon as the tooltip is replaced by another one, only
+ * the placeholder being kept by the graph figures.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+final class LazyTooltip extends Figure {
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(LazyTooltip.class);
+
+    /**
+     * Field factory.
+     */
+    private final Supplier<IFigure> factory;
+
+    /**
+     * Field evictAfterUse.
+     */
+    private final boolean evictAfterUse;
+
+    /**
+     * Field contents.
+     */
+    private IFigure contents;
+
+    /**
+     * Creates a new lazy tooltip.
+     *
+     * @param factory
+     *            builds the actual tooltip figure.
+     * @param evictAfterUse
+     *            if <code>true</code> the actual tooltip will be dropped
+     *            once it is not displayed anymore.
+     */
+    LazyTooltip(final Supplier<IFigure> factory, final boolean evictAfterUse) {
+        super();
+        this.factory = factory;
+        this.evictAfterUse = evictAfterUse;
+        setLayoutManager(new StackLayout());
+    }
+
+    /**
+     * Creates a lazy tooltip for a node.
+     *
+     * @param vertex
+     *            the node.
+     * @param evictAfterUse
+     *            if <code>true</code> the tooltip will be dropped after use.
+     * @return LazyTooltip
+     */
+    static LazyTooltip forVertex(final IVertex vertex, final boolean evictAfterUse) {
+        return new LazyTooltip(() -> new NodeTooltip(vertex), evictAfterUse);
+    }
+
+    /**
+     * Creates a lazy tooltip for a link.
+     *
+     * @param edge
+     *            the link.
+     * @param evictAfterUse
+     *            if <code>true</code> the tooltip will be dropped after use.
+     * @return LazyTooltip
+     */
+    static LazyTooltip forEdge(final IEdge edge, final boolean evictAfterUse) {
+        return new LazyTooltip(() -> new LinkTooltip(edge), evictAfterUse);
+    }
+
+    /**
+     * Builds the actual tooltip before the placeholder gets realized.
+     * @see org.eclipse.draw2d.Figure#addNotify()
+     */
+    @Override
+    public void addNotify() {
+        ensureContents();
+        super.addNotify();
+    }
+
+    /**
+     * Drops the actual tooltip when the placeholder is no longer displayed
+     * and eviction is enabled.
+     * @see org.eclipse.draw2d.Figure#removeNotify()
+     */
+    @Override
+    public void removeNotify() {
+        super.removeNotify();
+        if (evictAfterUse && (contents != null)) {
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Evicting tooltip " + contents);
+            }
+            remove(contents);
+            contents = null;
+        }
+    }
+
+    /**
+     * Creates the actual tooltip if it does not exist yet.
+     */
+    private void ensureContents() {
+        if (contents == null) {
+            contents = factory.get();
+            add(contents);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.graph.draw2d;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eclipse.draw2d.geometry.Rectangle;
+import org.eclipse.swt.graphics.Image;
+
+/**
+ * A least recently used cache of offscreen images holding fixed-size tiles
+ * of a graph rendered at a given zoom.
+ * <p>
+ * Tiles are addressed by zoom, column and row, the tile at column
+ * <code>c</code> and row <code>r</code> covering the zoomed area starting at
+ * <code>(c * TILE_SIZE, r * TILE_SIZE)</code>. The cache owns the images and
+ * disposes them when they are evicted to stay within its memory budget.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+final class TileCache {
+    /**
+     * Key of a tile.
+     */
+    private static final class TileKey {
+        /**
+         * Field zoom.
+         */
+        private final float zoom;
+
+        /**
+         * Field column.
+         */
+        private final int column;
+
+        /**
+         * Field row.
+         */
+        private final int row;
+
+        /**
+         * Constructor for TileKey.
+         * @param zoom float
+         * @param column int
+         * @param row int
+         */
+        TileKey(final float zoom, final int column, final int row) {
+            this.zoom = zoom;
+            this.column = column;
+            this.row = row;
+        }
+
+        /**
+         * Method equals.
+         * @param obj Object
+         * @return boolean
+         */
+        @Override
+        public boolean equals(final Object obj) {
+            if (!(obj instanceof TileKey)) {
+                return false;
+            }
+            final TileKey other = (TileKey) obj;
+            return (Float.compare(zoom, other.zoom) == 0)
+                    && (column == other.column) && (row == other.row);
+        }
+
+        /**
+         * Method hashCode.
+         * @return int
+         */
+        @Override
+        public int hashCode() {
+            return (Float.floatToIntBits(zoom) * 31 + column) * 31 + row;
+        }
+    }
+
+    /**
+     * Logger for this class.
+     */
+    private static final Log LOG = LogFactory.getLog(TileCache.class);
+
+    /**
+     * Field TILE_SIZE.
+     * (value is {@value #TILE_SIZE})
+     */
+    static final int TILE_SIZE = 256;
+
+    /**
+     * Field BYTES_PER_TILE: native memory used by a tile assuming 32 bits
+     * per pixel.
+     * (value is {@value #BYTES_PER_TILE})
+     */
+    private static final int BYTES_PER_TILE = TILE_SIZE * TILE_SIZE * 4;
+
+    /**
+     * Field INVALIDATION_MARGIN: extra pixels around invalidated areas to
+     * account for line widths and anti-aliasing.
+     * (value is {@value #INVALIDATION_MARGIN})
+     */
+    private static final int INVALIDATION_MARGIN = 2;
+
+    /**
+     * Field tiles, in access order.
+     */
+    private final Map<TileKey, Image> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Field maxTiles.
+     */
+    private int maxTiles;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxBytes
+     *            the maximum amount of native memory used by the tiles.
+     */
+    TileCache(final long maxBytes) {
+        setMaxBytes(maxBytes);
+    }
+
+    /**
+     * Disposes all the tiles.
+     */
+    void clear() {
+        for (final Image image : tiles.values()) {
+            image.dispose();
+        }
+        tiles.clear();
+    }
+
+    /**
+     * Returns a cached tile.
+     *
+     * @param zoom
+     *            the zoom the tile was rendered at.
+     * @param column
+     *            the tile's column.
+     * @param row
+     *            the tile's row.
+     * @return the tile or <code>null</code> if it is not cached.
+     */
+    Image get(final float zoom, final int column, final int row) {
+        return tiles.get(new TileKey(zoom, column, row));
+    }
+
+    /**
+     * Disposes the tiles, at any zoom, overlapping an area.
+     *
+     * @param area
+     *            the area in unzoomed graph coordinates.
+     */
+    void invalidate(final Rectangle area) {
+        int count = 0;
+        for (final Iterator<Map.Entry<TileKey, Image>> ite = tiles.entrySet().iterator();
+                ite.hasNext();) {
+            final Map.Entry<TileKey, Image> entry = ite.next();
+            final TileKey key = entry.getKey();
+            final int minX = (int) Math.floor(area.x * key.zoom) - INVALIDATION_MARGIN;
+            final int minY = (int) Math.floor(area.y * key.zoom) - INVALIDATION_MARGIN;
+            final int maxX = (int) Math.ceil((area.x + area.width) * key.zoom) + INVALIDATION_MARGIN;
+            final int maxY = (int) Math.ceil((area.y + area.height) * key.zoom) + INVALIDATION_MARGIN;
+            final int tileX = key.column * TILE_SIZE;
+            final int tileY = key.row * TILE_SIZE;
+            if ((maxX > tileX) && (minX < tileX + TILE_SIZE)
+                    && (maxY > tileY) && (minY < tileY + TILE_SIZE)) {
+                entry.getValue().dispose();
+                ite.remove();
+                count++;
+            }
+        }
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Invalidated " + count + " tiles for " + area);
+        }
+    }
+
+    /**
+     * Adds a tile to the cache, evicting the least recently used ones if
+     * the memory budget is exceeded.
+     *
+     * @param zoom
+     *            the zoom the tile was rendered at.
+     * @param column
+     *            the tile's column.
+     * @param row
+     *            the tile's row.
+     * @param image
+     *            the tile, now owned by the cache.
+     */
+    void put(final float zoom, final int column, final int row, final Image image) {
+        final Image previous = tiles.put(new TileKey(zoom, column, row), image);
+        if ((previous != null) && (previous != image)) {
+            previous.dispose();
+        }
+        evict();
+    }
+
+    /**
+     * Sets the maximum amount of native memory used by the tiles.
+     *
+     * @param maxBytes
+     *            the new budget, at least one tile will be kept.
+     */
+    void setMaxBytes(final long maxBytes) {
+        maxTiles = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / BYTES_PER_TILE));
+        evict();
+    }
+
+    /**
+     * Disposes the least recently used tiles above the budget.
+     */
+    private void evict() {
+        for (final Iterator<Image> ite = tiles.values().iterator();
+                (tiles.size() > maxTiles) && ite.hasNext();) {
+            ite.next().dispose();
+            ite.remove();
+        }
+    }
+}
@@ -27,12 +27,15 @@
  */
 package net.ggtools.grand.ui.log;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.eclipse.jface.action.Action;
 import org.eclipse.jface.action.MenuManager;
+import org.eclipse.jface.dialogs.MessageDialog;
 import org.eclipse.jface.window.ApplicationWindow;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.widgets.Composite;
@@ -48,6 +51,12 @@ import org.eclipse.swt.widgets.Shell;
  */
 public class Analyzer extends ApplicationWindow {
 
+    /**
+     * Number of events read from a file before being handed to the viewer.
+     * (value is {@value #BATCH_SIZE})
+     */
+    private static final int BATCH_SIZE = 10000;
+
     /**
      * Field logViewer.
      */
@@ -96,12 +105,7 @@ public class Analyzer extends ApplicationWindow {
                     dialog.setFilterExtensions(new String[]{"*.glg", "*.log", "*"});
                     final String logFileName = dialog.open();
                     if (logFileName != null) {
-                        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(logFileName))) {
-                            logViewer.setLogBuffer((LogEventBuffer) ois.readObject());
-                        } catch (final ClassNotFoundException | IOException e) {
-                            // TODO auto-generated catch block
-                            e.printStackTrace();
-                        }
+                        load(new File(logFileName));
                     }
                 }
             }
@@ -135,6 +139,74 @@ public class Analyzer extends ApplicationWindow {
         return logViewer;
     }
 
+    /**
+     * Loads a log file in the viewer. Binary log files are read in the
+     * background and displayed as they are loaded, files saved by older
+     * versions are deserialized through {@link LegacyLogEventBuffer}.
+     *
+     * @param logFile File
+     */
+    private void load(final File logFile) {
+        try {
+            if (LogFileReader.isLogFile(logFile)) {
+                final LogFileReader reader = new LogFileReader(logFile);
+                final LoadedLogBuffer buffer = new LoadedLogBuffer(reader.getDroppedCount());
+                logViewer.setLogBuffer(buffer);
+                final Thread loader = new Thread(() -> readEvents(logFile, reader, buffer),
+                        "Log loader");
+                loader.setDaemon(true);
+                loader.start();
+            } else {
+                try (FileInputStream stream = new FileInputStream(logFile)) {
+                    logViewer.setLogBuffer(LegacyLogEventBuffer.read(stream));
+                }
+            }
+        } catch (final ClassNotFoundException | IOException e) {
+            showLoadError(logFile, e);
+        }
+    }
+
+    /**
+     * Reads all the events of a log file into a buffer. Called from a
+     * background thread. When the file is corrupted the events read so far
+     * are kept and an error is shown.
+     *
+     * @param logFile File
+     * @param reader LogFileReader
+     * @param buffer LoadedLogBuffer
+     */
+    private void readEvents(final File logFile, final LogFileReader reader,
+            final LoadedLogBuffer buffer) {
+        List<LogEvent> batch = new ArrayList<>(BATCH_SIZE);
+        try (LogFileReader r = reader) {
+            LogEvent event;
+            while ((event = r.next()) != null) {
+                batch.add(event);
+                if (batch.size() == BATCH_SIZE) {
+                    buffer.addLogEvents(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+        } catch (final IOException | RuntimeException e) {
+            final Shell shell = getShell();
+            if (shell != null && !shell.isDisposed()) {
+                shell.getDisplay().asyncExec(() -> showLoadError(logFile, e));
+            }
+        } finally {
+            buffer.addLogEvents(batch);
+        }
+    }
+
+    /**
+     * Method showLoadError.
+     * @param logFile File
+     * @param e Exception
+     */
+    private void showLoadError(final File logFile, final Exception e) {
+        MessageDialog.openError(getShell(), "Cannot load log",
+                "Cannot load " + logFile + ": " + e.getMessage());
+    }
+
     /**
      * Method main.
      * @param args String[]
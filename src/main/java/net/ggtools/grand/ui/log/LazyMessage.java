@@ -0,0 +1,106 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.log;
+
+import java.util.function.Supplier;
+
+/**
+ * A log message computed only when a logger actually needs it. The UI
+ * loggers resolve it once, before handing it to the underlying log and to
+ * the log buffer, so the supplier and whatever it captures are not
+ * retained. Other loggers fall back on {@link #toString()}, which is
+ * evaluated lazily as well.
+ * <p>
+ * Usage: <code>log.debug(LazyMessage.of(() -&gt; "Layout of " + graph))</code>.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+public final class LazyMessage {
+
+    /**
+     * Creates a deferred message.
+     *
+     * @param supplier the code computing the message.
+     * @return LazyMessage
+     */
+    public static LazyMessage of(final Supplier<?> supplier) {
+        return new LazyMessage(supplier);
+    }
+
+    /**
+     * Returns the actual message for an object given to a logger.
+     *
+     * @param message a message, possibly a LazyMessage.
+     * @return the message itself or the computed one.
+     */
+    static Object resolve(final Object message) {
+        return message instanceof LazyMessage ? ((LazyMessage) message).get()
+                : message;
+    }
+
+    /**
+     * Field supplier.
+     */
+    private Supplier<?> supplier;
+
+    /**
+     * Field value.
+     */
+    private Object value;
+
+    /**
+     * Constructor for LazyMessage.
+     * @param supplier Supplier&lt;?&gt;
+     */
+    private LazyMessage(final Supplier<?> supplier) {
+        this.supplier = supplier;
+    }
+
+    /**
+     * Computes the message on first call.
+     *
+     * @return Object
+     */
+    public synchronized Object get() {
+        if (supplier != null) {
+            value = supplier.get();
+            supplier = null;
+        }
+        return value;
+    }
+
+    /**
+     * Method toString.
+     * @return String
+     */
+    @Override
+    public String toString() {
+        return String.valueOf(get());
+    }
+}
@@ -0,0 +1,134 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.log;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedList;
+
+/**
+ * Reads the logs saved by the versions predating the
+ * {@link LogFileFormat binary log format}, which serialized the whole
+ * {@link LogEventBufferImpl} when it still kept its events in a single linked
+ * list. The stream descriptor of this old buffer is mapped onto this class
+ * which has the same fields and resolves into a {@link LoadedLogBuffer}.
+ *
+ * @author Christophe Labouisse
+ */
+final class LegacyLogEventBuffer implements Serializable {
+
+    /**
+     * Input stream substituting this class to the old buffer.
+     */
+    private static final class LegacyInputStream extends ObjectInputStream {
+        /**
+         * Constructor for LegacyInputStream.
+         * @param in InputStream
+         * @throws IOException if the stream header cannot be read.
+         */
+        private LegacyInputStream(final InputStream in) throws IOException {
+            super(in);
+        }
+
+        /**
+         * Method readClassDescriptor.
+         * @return ObjectStreamClass
+         * @throws IOException
+         * @throws ClassNotFoundException
+         * @see java.io.ObjectInputStream#readClassDescriptor()
+         */
+        @Override
+        protected ObjectStreamClass readClassDescriptor()
+                throws IOException, ClassNotFoundException {
+            final ObjectStreamClass descriptor = super.readClassDescriptor();
+            if (LogEventBufferImpl.class.getName().equals(descriptor.getName())
+                    && (descriptor.getSerialVersionUID() == serialVersionUID)) {
+                return ObjectStreamClass.lookup(LegacyLogEventBuffer.class);
+            }
+            return descriptor;
+        }
+    }
+
+    /**
+     * Serial version of the old {@link LogEventBufferImpl}.
+     */
+    private static final long serialVersionUID = 3760564170055364917L;
+
+    /**
+     * Reads a serialized log buffer, either an old or a current one.
+     *
+     * @param in InputStream
+     * @return the buffer.
+     * @throws IOException if the stream cannot be read.
+     * @throws ClassNotFoundException if the stream holds unknown classes.
+     */
+    static LogEventBuffer read(final InputStream in)
+            throws IOException, ClassNotFoundException {
+        try (ObjectInputStream ois = new LegacyInputStream(in)) {
+            final Object buffer = ois.readObject();
+            if (!(buffer instanceof LogEventBuffer)) {
+                throw new IOException("Not a log: " + buffer.getClass().getName());
+            }
+            return (LogEventBuffer) buffer;
+        }
+    }
+
+    /**
+     * Field eventList, named after the field of the old buffer.
+     */
+    private LinkedList<LogEvent> eventList;
+
+    /**
+     * Constructor for LegacyLogEventBuffer, never called.
+     */
+    private LegacyLogEventBuffer() {
+    }
+
+    /**
+     * Replaces the deserialized buffer by a {@link LoadedLogBuffer}. The old
+     * events have no sequence number so they are numbered in list order.
+     *
+     * @return Object
+     */
+    private Object readResolve() {
+        final LoadedLogBuffer buffer = new LoadedLogBuffer(0);
+        if (eventList != null) {
+            long sequence = 0;
+            for (final LogEvent event : eventList) {
+                event.setSequence(++sequence);
+            }
+            buffer.addLogEvents(new ArrayList<>(eventList));
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,164 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A log buffer holding the events read from a log file. Events are added
+ * while the file is being read so a viewer can display the beginning of a
+ * big log before the end is loaded.
+ *
+ * @author Christophe Labouisse
+ */
+final class LoadedLogBuffer implements LogEventBuffer {
+
+    /**
+     * Comment for <code>serialVersionUID</code>.
+     */
+    private static final long serialVersionUID = 1848377461395830217L;
+
+    /**
+     * Field droppedCount.
+     */
+    private final long droppedCount;
+
+    /**
+     * Field events.
+     */
+    private final List<LogEvent> events = new ArrayList<>();
+
+    /**
+     * Field listener.
+     */
+    private transient volatile LogEventListener listener;
+
+    /**
+     * Constructor for LoadedLogBuffer.
+     * @param droppedCount the number of events dropped before the log was
+     *            saved.
+     */
+    LoadedLogBuffer(final long droppedCount) {
+        this.droppedCount = droppedCount;
+    }
+
+    /**
+     * Method addListener.
+     * @param newListener LogEventListener
+     * @see net.ggtools.grand.ui.log.LogEventBuffer#addListener(LogEventListener)
+     */
+    public void addListener(final LogEventListener newListener) {
+        listener = newListener;
+    }
+
+    /**
+     * Method clearLogEvents.
+     * @see net.ggtools.grand.ui.log.LogEventBuffer#clearLogEvents()
+     */
+    public synchronized void clearLogEvents() {
+        events.clear();
+    }
+
+    /**
+     * Method getDroppedCount.
+     * @return long
+     * @see net.ggtools.grand.ui.log.LogEventBuffer#getDroppedCount()
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Method getEventList.
+     * @return List&lt;LogEvent&gt;
+     * @see net.ggtools.grand.ui.log.LogEventBuffer#getEventList()
+     */
+    public synchronized List<LogEvent> getEventList() {
+        return Collections.unmodifiableList(new ArrayList<>(events));
+    }
+
+    /**
+     * Method getEventsAfter.
+     * @param sequence long
+     * @return List&lt;LogEvent&gt;
+     * @see net.ggtools.grand.ui.log.LogEventBuffer#getEventsAfter(long)
+     */
+    public synchronized List<LogEvent> getEventsAfter(final long sequence) {
+        int low = 0;
+        int high = events.size();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (events.get(middle).getSequence() <= sequence) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return Collections.unmodifiableList(new ArrayList<>(events.subList(low, events.size())));
+    }
+
+    /**
+     * Method removeListener.
+     * @param toRemove LogEventListener
+     * @see net.ggtools.grand.ui.log.LogEventBuffer#removeListener(LogEventListener)
+     */
+    public void removeListener(final LogEventListener toRemove) {
+        if (listener == toRemove) {
+            listener = null;
+        }
+    }
+
+    /**
+     * Appends a batch of events read from the file. The listener is
+     * notified once with the most severe event of the batch so that
+     * listeners filtering on the level react whenever the batch holds an
+     * event they are interested in.
+     *
+     * @param batch List&lt;LogEvent&gt;
+     */
+    void addLogEvents(final List<LogEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        LogEvent mostSevere = batch.get(0);
+        for (final LogEvent event : batch) {
+            if (event.getLevel().value > mostSevere.getLevel().value) {
+                mostSevere = event;
+            }
+        }
+        synchronized (this) {
+            events.addAll(batch);
+        }
+        final LogEventListener currentListener = listener;
+        if (currentListener != null) {
+            currentListener.logEventReceived(mostSevere);
+        }
+    }
+}
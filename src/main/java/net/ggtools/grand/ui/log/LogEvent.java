@@ -123,11 +123,21 @@ public class LogEvent implements Serializable {
      */
     private String originator;
 
+    /**
+     * Field sequence.
+     */
+    private long sequence;
+
     /**
      * Field time.
      */
     private long time;
 
+    /**
+     * Display text of the time, computed when first needed.
+     */
+    private transient String timeText;
+
     /**
      *
      * @param level Level
@@ -172,6 +182,16 @@ public class LogEvent implements Serializable {
         return originator;
     }
 
+    /**
+     * Returns the position of the event in the stream of events stored
+     * by the log buffer.
+     *
+     * @return Returns the sequence.
+     */
+    public final long getSequence() {
+        return sequence;
+    }
+
     /**
      * @return Returns the time.
      */
@@ -179,6 +199,14 @@ public class LogEvent implements Serializable {
         return time;
     }
 
+    /**
+     * @return Returns the cached display text of the time, may be
+     *         <code>null</code>.
+     */
+    final String getTimeText() {
+        return timeText;
+    }
+
     /**
      * @param exception
      *            The exception to set.
@@ -211,11 +239,28 @@ public class LogEvent implements Serializable {
         this.originator = originator;
     }
 
+    /**
+     * @param sequence
+     *            The sequence to set.
+     */
+    final void setSequence(final long sequence) {
+        this.sequence = sequence;
+    }
+
     /**
      * @param time
      *            The time to set.
      */
     final void setTime(final long time) {
         this.time = time;
+        timeText = null;
+    }
+
+    /**
+     * @param timeText
+     *            The display text of the time to cache.
+     */
+    final void setTimeText(final String timeText) {
+        this.timeText = timeText;
     }
 }
@@ -49,12 +49,32 @@ public interface LogEventBuffer extends Serializable {
     void clearLogEvents();
 
     /**
-     * Return an unmodifiable list of events.
+     * Returns the number of events which were discarded to keep the buffer
+     * within its capacity.
+     *
+     * @return the number of dropped events.
+     */
+    long getDroppedCount();
+
+    /**
+     * Return an unmodifiable list of events. The list is a snapshot: it is
+     * not affected by the events logged after the call.
      *
      * @return the list of events.
      */
     List<LogEvent> getEventList();
 
+    /**
+     * Return the events logged after a given one, oldest first. Used to
+     * refresh views incrementally: the sequence is usually the one of the
+     * last event already known by the caller.
+     *
+     * @param sequence the {@link LogEvent#getSequence() sequence} of the
+     *            last known event, or -1 to get all the events.
+     * @return an unmodifiable snapshot of the newer events.
+     */
+    List<LogEvent> getEventsAfter(final long sequence);
+
     /**
      * Remove a specific listener.
      *
@@ -27,20 +27,232 @@
  */
 package net.ggtools.grand.ui.log;
 
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
 
 import net.ggtools.grand.ui.log.LogEvent.Level;
 
 /**
  * A singleton class used to store the log events generated from the start of
  * the application.
+ * <p>
+ * The buffer holds at most {@link #getCapacity()} events. When it is full the
+ * oldest event is dropped, skipping the levels which are still within their
+ * reserved quota: with the default settings a burst of debug messages cannot
+ * push the last errors out of the buffer.
+ * </p>
+ * <p>
+ * Producers never block: new events are pushed on a lock-free queue which
+ * is drained into the rings by whichever thread gets the drain lock, the
+ * other producers just leave their events for it. Readers take the lock
+ * and drain the queue before reading so they always get a consistent
+ * snapshot including every event logged before the call.
+ * </p>
  *
  * @author Christophe Labouisse
  */
 public final class LogEventBufferImpl implements LogEventBuffer {
 
+    /**
+     * A bounded FIFO of events sharing the same retention quota. Each event
+     * is stored with its global sequence number so the different rings can
+     * be merged back in arrival order.
+     */
+    private static final class EventRing implements Serializable {
+        /**
+         * Comment for <code>serialVersionUID</code>.
+         */
+        private static final long serialVersionUID = -2961353738462384507L;
+
+        /**
+         * Field INITIAL_SIZE.
+         * (value is {@value #INITIAL_SIZE})
+         */
+        private static final int INITIAL_SIZE = 64;
+
+        /**
+         * Field events.
+         */
+        private LogEvent[] events = new LogEvent[INITIAL_SIZE];
+
+        /**
+         * Field sequences.
+         */
+        private long[] sequences = new long[INITIAL_SIZE];
+
+        /**
+         * Field head.
+         */
+        private int head;
+
+        /**
+         * Field size.
+         */
+        private int size;
+
+        /**
+         * Field quota.
+         */
+        private int quota;
+
+        /**
+         * Appends an event at the end of the ring.
+         * @param event LogEvent
+         * @param sequence long
+         */
+        void add(final LogEvent event, final long sequence) {
+            if (size == events.length) {
+                grow();
+            }
+            final int index = (head + size) % events.length;
+            events[index] = event;
+            sequences[index] = sequence;
+            size++;
+        }
+
+        /**
+         * Removes all the events.
+         */
+        void clear() {
+            events = new LogEvent[INITIAL_SIZE];
+            sequences = new long[INITIAL_SIZE];
+            head = 0;
+            size = 0;
+        }
+
+        /**
+         * Returns the event at the given position, 0 being the oldest one.
+         * @param position int
+         * @return LogEvent
+         */
+        LogEvent get(final int position) {
+            return events[(head + position) % events.length];
+        }
+
+        /**
+         * Returns the sequence number of the oldest event.
+         * @return long
+         */
+        long oldestSequence() {
+            return sequences[head];
+        }
+
+        /**
+         * Returns the sequence number of the event at the given position.
+         * @param position int
+         * @return long
+         */
+        long sequenceAt(final int position) {
+            return sequences[(head + position) % events.length];
+        }
+
+        /**
+         * Returns the position of the first event with a sequence number
+         * greater than the given one.
+         * @param sequence long
+         * @return int
+         */
+        int positionAfter(final long sequence) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                final int middle = (low + high) >>> 1;
+                if (sequenceAt(middle) <= sequence) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Drops the oldest event.
+         */
+        void removeOldest() {
+            events[head] = null;
+            head = (head + 1) % events.length;
+            size--;
+        }
+
+        /**
+         * Method grow.
+         */
+        private void grow() {
+            final int newLength = events.length * 2;
+            final LogEvent[] newEvents = new LogEvent[newLength];
+            final long[] newSequences = new long[newLength];
+            for (int i = 0; i < size; i++) {
+                final int index = (head + i) % events.length;
+                newEvents[i] = events[index];
+                newSequences[i] = sequences[index];
+            }
+            events = newEvents;
+            sequences = newSequences;
+            head = 0;
+        }
+    }
+
+    /**
+     * Field DEFAULT_CAPACITY.
+     * (value is {@value #DEFAULT_CAPACITY})
+     */
+    public static final int DEFAULT_CAPACITY = 5000;
+
+    /**
+     * Field DEFAULT_ERROR_QUOTA.
+     * (value is {@value #DEFAULT_ERROR_QUOTA})
+     */
+    public static final int DEFAULT_ERROR_QUOTA = 500;
+
+    /**
+     * Field DEFAULT_WARNING_QUOTA.
+     * (value is {@value #DEFAULT_WARNING_QUOTA})
+     */
+    public static final int DEFAULT_WARNING_QUOTA = 500;
+
+    /**
+     * Field DEFAULT_INFO_QUOTA.
+     * (value is {@value #DEFAULT_INFO_QUOTA})
+     */
+    public static final int DEFAULT_INFO_QUOTA = 500;
+
+    /**
+     * Field DEFAULT_CAPTURE_LEVEL.
+     */
+    public static final Level DEFAULT_CAPTURE_LEVEL = LogEvent.INFO;
+
+    /**
+     * Field DEBUG_RING.
+     * (value is {@value #DEBUG_RING})
+     */
+    private static final int DEBUG_RING = 0;
+
+    /**
+     * Field INFO_RING.
+     * (value is {@value #INFO_RING})
+     */
+    private static final int INFO_RING = 1;
+
+    /**
+     * Field WARNING_RING.
+     * (value is {@value #WARNING_RING})
+     */
+    private static final int WARNING_RING = 2;
+
+    /**
+     * Field ERROR_RING.
+     * (value is {@value #ERROR_RING})
+     */
+    private static final int ERROR_RING = 3;
+
     /**
      * Field instance.
      */
@@ -49,7 +261,7 @@ public final class LogEventBufferImpl implements LogEventBuffer {
     /**
      * Comment for <code>serialVersionUID</code>.
      */
-    private static final long serialVersionUID = 3760564170055364917L;
+    private static final long serialVersionUID = 5143716420993612876L;
 
 
     /**
@@ -67,20 +279,81 @@ public final class LogEventBufferImpl implements LogEventBuffer {
     }
 
     /**
-     * Field eventList.
+     * Returns the ring used to store the events of a given level: TRACE
+     * and DEBUG share one ring as do ERROR and FATAL.
+     *
+     * @param level Level
+     * @return int
+     */
+    private static int ringIndex(final Level level) {
+        if (level.value >= LogEvent.ERROR.value) {
+            return ERROR_RING;
+        }
+        if (level.value == LogEvent.WARNING.value) {
+            return WARNING_RING;
+        }
+        if (level.value == LogEvent.INFO.value) {
+            return INFO_RING;
+        }
+        return DEBUG_RING;
+    }
+
+    /**
+     * Field rings.
+     */
+    private final EventRing[] rings = new EventRing[ERROR_RING + 1];
+
+    /**
+     * Field captureLevel.
+     */
+    private volatile int captureLevel = DEFAULT_CAPTURE_LEVEL.value;
+
+    /**
+     * Field pending.
+     */
+    private final Queue<LogEvent> pending = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Field drainLock.
+     */
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    /**
+     * Field capacity.
+     */
+    private int capacity = DEFAULT_CAPACITY;
+
+    /**
+     * Field size.
      */
-    private final LinkedList<LogEvent> eventList = new LinkedList<>();
+    private int size;
+
+    /**
+     * Field nextSequence.
+     */
+    private long nextSequence;
+
+    /**
+     * Field droppedCount.
+     */
+    private long droppedCount;
 
     /**
      * Field listener.
      */
-    private transient LogEventListener listener;
+    private transient volatile LogEventListener listener;
 
     /**
      * Creates a new buffer.
      */
     private LogEventBufferImpl() {
         super();
+        for (int i = 0; i < rings.length; i++) {
+            rings[i] = new EventRing();
+        }
+        rings[ERROR_RING].quota = DEFAULT_ERROR_QUOTA;
+        rings[WARNING_RING].quota = DEFAULT_WARNING_QUOTA;
+        rings[INFO_RING].quota = DEFAULT_INFO_QUOTA;
     }
 
     /**
@@ -96,18 +369,125 @@ public final class LogEventBufferImpl implements LogEventBuffer {
      * Method clearLogEvents.
      * @see net.ggtools.grand.ui.log.LogEventBuffer#clearLogEvents()
      */
-    public synchronized void clearLogEvents() {
-        eventList.clear();
+    public void clearLogEvents() {
+        drainLock.lock();
+        try {
+            pending.clear();
+            for (final EventRing ring : rings) {
+                ring.clear();
+            }
+            size = 0;
+            droppedCount = 0;
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the maximum number of events kept in the buffer.
+     *
+     * @return int
+     */
+    public int getCapacity() {
+        drainLock.lock();
+        try {
+            return capacity;
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of events dropped since the buffer was last
+     * cleared.
+     *
+     * @return long
+     * @see net.ggtools.grand.ui.log.LogEventBuffer#getDroppedCount()
+     */
+    public long getDroppedCount() {
+        drainLock.lock();
+        try {
+            drainPending();
+            return droppedCount;
+        } finally {
+            drainLock.unlock();
+        }
     }
 
     /**
-     * Return an unmodifiable list.
+     * Return an unmodifiable snapshot of the retained events, oldest first.
      *
      * @return List&lt;LogEvent&gt;
      * @see net.ggtools.grand.ui.log.LogEventBuffer#getEventList()
      */
     public List<LogEvent> getEventList() {
-        return Collections.unmodifiableList(eventList);
+        drainLock.lock();
+        try {
+            drainPending();
+            return Collections.unmodifiableList(mergeRings(-1L));
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Method getEventsAfter.
+     * @param sequence long
+     * @return List&lt;LogEvent&gt;
+     * @see net.ggtools.grand.ui.log.LogEventBuffer#getEventsAfter(long)
+     */
+    public List<LogEvent> getEventsAfter(final long sequence) {
+        drainLock.lock();
+        try {
+            drainPending();
+            return Collections.unmodifiableList(mergeRings(sequence));
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Merges the content of the rings in arrival order. Must be called
+     * with the drain lock held.
+     *
+     * @param after only the events with a greater sequence are returned.
+     * @return List&lt;LogEvent&gt;
+     */
+    private List<LogEvent> mergeRings(final long after) {
+        final int[] positions = new int[rings.length];
+        int count = 0;
+        for (int r = 0; r < rings.length; r++) {
+            positions[r] = rings[r].positionAfter(after);
+            count += rings[r].size - positions[r];
+        }
+        final List<LogEvent> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int oldest = -1;
+            long oldestSequence = Long.MAX_VALUE;
+            for (int r = 0; r < rings.length; r++) {
+                if (positions[r] < rings[r].size) {
+                    final long sequence = rings[r].sequenceAt(positions[r]);
+                    if (sequence < oldestSequence) {
+                        oldestSequence = sequence;
+                        oldest = r;
+                    }
+                }
+            }
+            result.add(rings[oldest].get(positions[oldest]++));
+        }
+        return result;
+    }
+
+    /**
+     * Tells if events of a given level are stored in the buffer. Loggers
+     * check this before building anything so that the levels below the
+     * capture threshold cost nothing.
+     *
+     * @param level Level
+     * @return <code>true</code> if the events will be stored.
+     */
+    public boolean isCaptured(final Level level) {
+        return level.value >= captureLevel;
     }
 
     /**
@@ -121,6 +501,46 @@ public final class LogEventBufferImpl implements LogEventBuffer {
         }
     }
 
+    /**
+     * Sets the lowest level of the events stored in the buffer. Events
+     * already in the buffer are kept.
+     *
+     * @param levelValue the {@link Level#value} of the threshold.
+     */
+    public void setCaptureLevel(final int levelValue) {
+        captureLevel = levelValue;
+    }
+
+    /**
+     * Sets the retention policy of the buffer. The quotas are the number of
+     * events of each level which are guaranteed to be kept whatever the
+     * number of events from other levels; TRACE and DEBUG events have no
+     * reserved room. Events are dropped right away if the new settings are
+     * smaller than the current content. Negative values are treated as
+     * zero and the capacity is at least one.
+     *
+     * @param newCapacity the total number of events kept.
+     * @param errorQuota number of ERROR and FATAL events kept.
+     * @param warningQuota number of WARNING events kept.
+     * @param infoQuota number of INFO events kept.
+     */
+    public void setRetention(final int newCapacity,
+            final int errorQuota, final int warningQuota, final int infoQuota) {
+        drainLock.lock();
+        try {
+            capacity = Math.max(1, newCapacity);
+            rings[ERROR_RING].quota = Math.max(0, errorQuota);
+            rings[WARNING_RING].quota = Math.max(0, warningQuota);
+            rings[INFO_RING].quota = Math.max(0, infoQuota);
+            drainPending();
+            while (size > capacity) {
+                dropOldest(DEBUG_RING);
+            }
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
     /**
      * Method addLogEvent.
      * @param level Level
@@ -143,9 +563,86 @@ public final class LogEventBufferImpl implements LogEventBuffer {
             final Object message, final Throwable exception) {
         final LogEvent logEvent =
                 new LogEvent(level, originator, message, exception);
-        eventList.addLast(logEvent);
-        if (listener != null) {
-            listener.logEventReceived(logEvent);
+        pending.add(logEvent);
+        // Loop in case an event was queued while the lock holder was
+        // releasing it.
+        while (!pending.isEmpty() && drainLock.tryLock()) {
+            try {
+                drainPending();
+            } finally {
+                drainLock.unlock();
+            }
+        }
+        final LogEventListener currentListener = listener;
+        if (currentListener != null) {
+            currentListener.logEventReceived(logEvent);
+        }
+    }
+
+    /**
+     * Moves the pending events to the rings. Must be called with the drain
+     * lock held.
+     */
+    private void drainPending() {
+        LogEvent logEvent;
+        while ((logEvent = pending.poll()) != null) {
+            final int ringIndex = ringIndex(logEvent.getLevel());
+            if (size >= capacity) {
+                dropOldest(ringIndex);
+            }
+            logEvent.setSequence(nextSequence);
+            rings[ringIndex].add(logEvent, nextSequence++);
+            size++;
+        }
+    }
+
+    /**
+     * Drains the pending events before writing the buffer so the saved
+     * log is complete.
+     *
+     * @param out ObjectOutputStream
+     * @throws IOException if the buffer cannot be written.
+     */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        drainLock.lock();
+        try {
+            drainPending();
+            out.defaultWriteObject();
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the oldest event among the rings holding more events than their
+     * quota. When every ring is within its quota, the oldest event from the
+     * preferred ring is dropped or, if the latter is empty, the oldest event
+     * of the whole buffer.
+     *
+     * @param preferredRing the ring to drop from when all quotas are
+     *            respected.
+     */
+    private void dropOldest(final int preferredRing) {
+        EventRing victim = null;
+        EventRing oldest = null;
+        for (final EventRing ring : rings) {
+            if (ring.size == 0) {
+                continue;
+            }
+            if (ring.size > ring.quota && (victim == null
+                    || ring.oldestSequence() < victim.oldestSequence())) {
+                victim = ring;
+            }
+            if (oldest == null
+                    || ring.oldestSequence() < oldest.oldestSequence()) {
+                oldest = ring;
+            }
+        }
+        if (victim == null) {
+            victim = rings[preferredRing].size > 0 ? rings[preferredRing] : oldest;
         }
+        victim.removeOldest();
+        size--;
+        droppedCount++;
     }
 }
@@ -288,7 +288,7 @@ public class LogEventDetailDialog extends Dialog {
 
         final Throwable exception = event.getException();
         if (exception != null) {
-            addKeyValue(composite, "Exception:", exception.getClass().getName(), 2);
+            addKeyValue(composite, "Exception:", SavedException.getClassName(exception), 2);
             addKeyValue(composite, "", exception.getMessage(), 2);
         }
 
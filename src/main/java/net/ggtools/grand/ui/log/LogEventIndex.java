@@ -0,0 +1,240 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The rows displayed by the {@link LogViewer}. Besides the events
+ * themselves, the index keeps for each level the positions of the events
+ * at or above this level so that the rows of any filter can be reached
+ * without scanning the events. When a search query is set, the rows are
+ * the events of the current level matching the query according to a
+ * {@link LogSearchIndex}.
+ *
+ * @author Christophe Labouisse
+ */
+final class LogEventIndex {
+
+    /**
+     * Field INITIAL_SIZE.
+     * (value is {@value #INITIAL_SIZE})
+     */
+    private static final int INITIAL_SIZE = 256;
+
+    /**
+     * Field events.
+     */
+    private final List<LogEvent> events = new ArrayList<>();
+
+    /**
+     * Positions in events of the rows for each minimum level, indexed by
+     * level value - 1.
+     */
+    private final int[][] rows = new int[LogEvent.FATAL.value][];
+
+    /**
+     * Number of rows for each minimum level.
+     */
+    private final int[] rowCounts = new int[LogEvent.FATAL.value];
+
+    /**
+     * Field lastSequence.
+     */
+    private long lastSequence = -1L;
+
+    /**
+     * Field minLevel.
+     */
+    private int minLevel = LogEvent.TRACE.value;
+
+    /**
+     * Field queryWords.
+     */
+    private List<String> queryWords = Collections.emptyList();
+
+    /**
+     * Field searchIndex.
+     */
+    private final LogSearchIndex searchIndex = new LogSearchIndex();
+
+    /**
+     * Positions of the rows matching the query, <code>null</code> when
+     * there is no query.
+     */
+    private int[] matchingRows;
+
+    /**
+     * Field matchingRowCount.
+     */
+    private int matchingRowCount;
+
+    /**
+     * Constructor for LogEventIndex.
+     */
+    LogEventIndex() {
+        clear();
+    }
+
+    /**
+     * Adds events at the end of the index. Events already indexed are
+     * ignored.
+     *
+     * @param newEvents events, oldest first.
+     */
+    void append(final List<LogEvent> newEvents) {
+        for (final LogEvent event : newEvents) {
+            if (event.getSequence() <= lastSequence) {
+                continue;
+            }
+            final int position = events.size();
+            events.add(event);
+            lastSequence = event.getSequence();
+            final int levelIndex = Math.min(event.getLevel().value, rows.length) - 1;
+            for (int i = 0; i <= levelIndex; i++) {
+                if (rowCounts[i] == rows[i].length) {
+                    rows[i] = Arrays.copyOf(rows[i], rows[i].length * 2);
+                }
+                rows[i][rowCounts[i]++] = position;
+            }
+            searchIndex.add(position, event);
+            if (matchingRows != null && event.getLevel().value >= minLevel
+                    && LogSearchIndex.matches(event, queryWords)) {
+                addMatchingRow(position);
+            }
+        }
+    }
+
+    /**
+     * Removes all the events.
+     */
+    void clear() {
+        events.clear();
+        searchIndex.clear();
+        if (matchingRows != null) {
+            matchingRowCount = 0;
+        }
+        lastSequence = -1L;
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new int[INITIAL_SIZE];
+            rowCounts[i] = 0;
+        }
+    }
+
+    /**
+     * Returns the sequence of the last indexed event.
+     *
+     * @return long
+     */
+    long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Returns a row of the filtered table.
+     *
+     * @param row int
+     * @return LogEvent
+     */
+    LogEvent getRow(final int row) {
+        if (matchingRows != null) {
+            return events.get(matchingRows[row]);
+        }
+        return events.get(rows[levelIndex(minLevel)][row]);
+    }
+
+    /**
+     * Returns the number of rows of the filtered table.
+     *
+     * @return int
+     */
+    int getRowCount() {
+        if (matchingRows != null) {
+            return matchingRowCount;
+        }
+        return rowCounts[levelIndex(minLevel)];
+    }
+
+    /**
+     * Sets the filter defining the rows.
+     *
+     * @param newMinLevel the minimum level value.
+     * @param query the search query, blank to display all the events of
+     *            the level.
+     */
+    void setFilter(final int newMinLevel, final String query) {
+        minLevel = newMinLevel;
+        queryWords = LogSearchIndex.parseQuery(query);
+        if (queryWords.isEmpty()) {
+            matchingRows = null;
+            return;
+        }
+        matchingRows = new int[INITIAL_SIZE];
+        matchingRowCount = 0;
+        final BitSet matches = searchIndex.search(queryWords);
+        for (int position = matches.nextSetBit(0); position >= 0;
+                position = matches.nextSetBit(position + 1)) {
+            if (events.get(position).getLevel().value >= minLevel) {
+                addMatchingRow(position);
+            }
+        }
+    }
+
+    /**
+     * Returns the total number of indexed events.
+     *
+     * @return int
+     */
+    int size() {
+        return events.size();
+    }
+
+    /**
+     * Method addMatchingRow.
+     * @param position int
+     */
+    private void addMatchingRow(final int position) {
+        if (matchingRowCount == matchingRows.length) {
+            matchingRows = Arrays.copyOf(matchingRows, matchingRowCount * 2);
+        }
+        matchingRows[matchingRowCount++] = position;
+    }
+
+    /**
+     * Method levelIndex.
+     * @param minLevel int
+     * @return int
+     */
+    private int levelIndex(final int minLevel) {
+        return Math.max(1, Math.min(minLevel, rows.length)) - 1;
+    }
+}
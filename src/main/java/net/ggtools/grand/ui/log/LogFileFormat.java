@@ -0,0 +1,103 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.log;
+
+/**
+ * Constants of the binary log file format.
+ * <p>
+ * A file starts with a header made of {@link #MAGIC}, {@link #VERSION} (a
+ * short) and the number of events dropped by the buffer before the log was
+ * saved (a long). Then comes a sequence of records, each one made of its
+ * length (an int, not including the length itself), its type (a byte) and
+ * its content:
+ * </p>
+ * <ul>
+ * <li>{@link #RECORD_STRING}: the id (an int) and the value of a string,
+ * used to store each originator only once;</li>
+ * <li>{@link #RECORD_EVENT}: the sequence and the time (longs), the level
+ * value (a byte), the id of the originator (an int), the message and, if
+ * the event has an exception, its class name, its message and its stack
+ * trace.</li>
+ * </ul>
+ * <p>
+ * Strings are written as their length in bytes (an int, -1 for
+ * <code>null</code>) followed by their UTF-8 encoding. All numbers are big
+ * endian.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+interface LogFileFormat {
+    /**
+     * Field MAGIC: "GLG" followed by 0x01.
+     * (value is {@value #MAGIC})
+     */
+    int MAGIC = 0x474C4701;
+
+    /**
+     * Field VERSION.
+     * (value is {@value #VERSION})
+     */
+    short VERSION = 1;
+
+    /**
+     * Field HEADER_SIZE.
+     * (value is {@value #HEADER_SIZE})
+     */
+    int HEADER_SIZE = 4 + 2 + 8;
+
+    /**
+     * Field RECORD_STRING.
+     * (value is {@value #RECORD_STRING})
+     */
+    byte RECORD_STRING = 1;
+
+    /**
+     * Field RECORD_EVENT.
+     * (value is {@value #RECORD_EVENT})
+     */
+    byte RECORD_EVENT = 2;
+
+    /**
+     * Field NO_EXCEPTION.
+     * (value is {@value #NO_EXCEPTION})
+     */
+    byte NO_EXCEPTION = 0;
+
+    /**
+     * Field WITH_EXCEPTION.
+     * (value is {@value #WITH_EXCEPTION})
+     */
+    byte WITH_EXCEPTION = 1;
+
+    /**
+     * Field NULL_LENGTH.
+     * (value is {@value #NULL_LENGTH})
+     */
+    int NULL_LENGTH = -1;
+}
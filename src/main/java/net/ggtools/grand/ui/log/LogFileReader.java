@@ -0,0 +1,282 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.ggtools.grand.ui.log.LogEvent.Level;
+
+/**
+ * Reads a file in the {@link LogFileFormat binary log format} one event at
+ * a time. The file is memory-mapped by windows so that big logs can be read
+ * without loading them first. A truncated last record, as left by an
+ * interrupted save, is ignored. The content of the records is checked so a
+ * corrupted record is reported as an {@link IOException}.
+ *
+ * @author Christophe Labouisse
+ */
+final class LogFileReader implements LogFileFormat, Closeable {
+
+    /**
+     * Field WINDOW_SIZE.
+     * (value is {@value #WINDOW_SIZE})
+     */
+    private static final int WINDOW_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Field LEVELS.
+     */
+    private static final Level[] LEVELS = {LogEvent.TRACE, LogEvent.DEBUG,
+            LogEvent.INFO, LogEvent.WARNING, LogEvent.ERROR, LogEvent.FATAL};
+
+    /**
+     * Tells if a file starts with the binary log header.
+     *
+     * @param file File
+     * @return boolean
+     * @throws IOException if the file cannot be read.
+     */
+    static boolean isLogFile(final File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            return raf.length() >= HEADER_SIZE && raf.readInt() == MAGIC;
+        }
+    }
+
+    /**
+     * Field channel.
+     */
+    private final FileChannel channel;
+
+    /**
+     * Field droppedCount.
+     */
+    private final long droppedCount;
+
+    /**
+     * Field fileSize.
+     */
+    private final long fileSize;
+
+    /**
+     * Field position.
+     */
+    private long position;
+
+    /**
+     * Field strings.
+     */
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * Field window.
+     */
+    private MappedByteBuffer window;
+
+    /**
+     * Field windowStart.
+     */
+    private long windowStart;
+
+    /**
+     * Opens a log file and reads its header.
+     *
+     * @param file File
+     * @throws IOException if the file cannot be read or is not a log file.
+     */
+    LogFileReader(final File file) throws IOException {
+        channel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            fileSize = channel.size();
+            if (fileSize < HEADER_SIZE || !map(0, HEADER_SIZE) || window.getInt() != MAGIC) {
+                throw new IOException(file + " is not a log file");
+            }
+            final short version = window.getShort();
+            if (version != VERSION) {
+                throw new IOException("Unsupported log file version " + version);
+            }
+            droppedCount = window.getLong();
+            position = HEADER_SIZE;
+        } catch (final IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Method close.
+     * @throws IOException
+     * @see java.io.Closeable#close()
+     */
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     * Returns the number of events dropped by the buffer before it was
+     * saved.
+     *
+     * @return long
+     */
+    long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Reads the next event.
+     *
+     * @return the event or <code>null</code> at the end of the file.
+     * @throws IOException if the file cannot be read or is corrupted.
+     */
+    LogEvent next() throws IOException {
+        while (map(position, 4)) {
+            final long recordStart = position;
+            final int length = window.getInt();
+            if (length < 1 || !map(position + 4, length)) {
+                // Truncated record.
+                return null;
+            }
+            position += 4 + length;
+            // Reading past the limit means the record is corrupted.
+            window.limit(window.position() + length);
+            try {
+                final byte type = window.get();
+                if (type == RECORD_STRING) {
+                    final int id = window.getInt();
+                    if (id != strings.size()) {
+                        throw new IOException("Unexpected string id " + id);
+                    }
+                    strings.add(readString());
+                } else if (type == RECORD_EVENT) {
+                    return readEvent();
+                }
+                // Unknown records are skipped.
+            } catch (final BufferUnderflowException e) {
+                throw new IOException("Corrupted record at offset " + recordStart, e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the fraction of the file already read.
+     *
+     * @return a value between 0 and 1.
+     */
+    double getProgress() {
+        return fileSize == 0 ? 1.0 : (double) position / fileSize;
+    }
+
+    /**
+     * Makes the window cover a part of the file and positions it at the
+     * start of this part.
+     *
+     * @param start long
+     * @param length int
+     * @return <code>false</code> if the part goes beyond the end of the file.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private boolean map(final long start, final int length) throws IOException {
+        if (start + length > fileSize) {
+            return false;
+        }
+        if (window == null || start < windowStart
+                || start + length > windowStart + window.capacity()) {
+            windowStart = start;
+            final long size = Math.min(Math.max(WINDOW_SIZE, length), fileSize - start);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+        }
+        window.limit(window.capacity());
+        window.position((int) (start - windowStart));
+        return true;
+    }
+
+    /**
+     * Reads the content of an event record.
+     *
+     * @return LogEvent
+     * @throws IOException if the record is corrupted.
+     */
+    private LogEvent readEvent() throws IOException {
+        final long sequence = window.getLong();
+        final long time = window.getLong();
+        final int levelValue = window.get();
+        if (levelValue < 1 || levelValue > LEVELS.length) {
+            throw new IOException("Unknown log level " + levelValue);
+        }
+        final int originatorId = window.getInt();
+        if (originatorId != NULL_LENGTH && (originatorId < 0 || originatorId >= strings.size())) {
+            throw new IOException("Unknown string id " + originatorId);
+        }
+        final String originator = originatorId == NULL_LENGTH ? null : strings.get(originatorId);
+        final String message = readString();
+        Throwable exception = null;
+        final byte exceptionFlag = window.get();
+        if (exceptionFlag != NO_EXCEPTION && exceptionFlag != WITH_EXCEPTION) {
+            throw new IOException("Unexpected exception flag " + exceptionFlag);
+        }
+        if (exceptionFlag == WITH_EXCEPTION) {
+            final String className = readString();
+            final String exceptionMessage = readString();
+            exception = new SavedException(className, exceptionMessage, readString());
+        }
+        final LogEvent event =
+                new LogEvent(LEVELS[levelValue - 1], originator, message, exception);
+        event.setSequence(sequence);
+        event.setTime(time);
+        return event;
+    }
+
+    /**
+     * Reads a string from the current record.
+     *
+     * @return String
+     * @throws IOException if the length of the string is invalid.
+     */
+    private String readString() throws IOException {
+        final int length = window.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > window.remaining()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        final byte[] bytes = new byte[length];
+        window.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,191 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.log;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes log events to a stream using the {@link LogFileFormat binary log
+ * format}. Events are written one by one so a log can be saved without
+ * building any intermediate representation.
+ *
+ * @author Christophe Labouisse
+ */
+final class LogFileWriter implements LogFileFormat, Closeable {
+
+    /**
+     * Field out.
+     */
+    private final DataOutputStream out;
+
+    /**
+     * Field record.
+     */
+    private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+
+    /**
+     * Field recordOut.
+     */
+    private final DataOutputStream recordOut = new DataOutputStream(record);
+
+    /**
+     * Field stringIds.
+     */
+    private final Map<String, Integer> stringIds = new HashMap<>();
+
+    /**
+     * Creates a writer and writes the file header.
+     *
+     * @param stream the destination stream, closed with the writer.
+     * @param droppedCount number of events dropped from the saved buffer.
+     * @throws IOException if the header cannot be written.
+     */
+    LogFileWriter(final OutputStream stream, final long droppedCount)
+            throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(droppedCount);
+    }
+
+    /**
+     * Writes a whole log buffer to a stream.
+     *
+     * @param buffer LogEventBuffer
+     * @param stream the destination stream, closed when done.
+     * @throws IOException if the log cannot be written.
+     */
+    static void write(final LogEventBuffer buffer, final OutputStream stream)
+            throws IOException {
+        try (LogFileWriter writer = new LogFileWriter(stream, buffer.getDroppedCount())) {
+            for (final LogEvent event : buffer.getEventList()) {
+                writer.write(event);
+            }
+        }
+    }
+
+    /**
+     * Method close.
+     * @throws IOException
+     * @see java.io.Closeable#close()
+     */
+    public void close() throws IOException {
+        out.close();
+    }
+
+    /**
+     * Appends an event to the file.
+     *
+     * @param event LogEvent
+     * @throws IOException if the event cannot be written.
+     */
+    void write(final LogEvent event) throws IOException {
+        final int originatorId = internString(event.getOriginator());
+        recordOut.writeByte(RECORD_EVENT);
+        recordOut.writeLong(event.getSequence());
+        recordOut.writeLong(event.getTime());
+        recordOut.writeByte(event.getLevel().value);
+        recordOut.writeInt(originatorId);
+        final Object message = event.getMessage();
+        writeString(message == null ? null : message.toString());
+        final Throwable exception = event.getException();
+        if (exception == null) {
+            recordOut.writeByte(NO_EXCEPTION);
+        } else {
+            recordOut.writeByte(WITH_EXCEPTION);
+            writeString(SavedException.getClassName(exception));
+            writeString(exception.getMessage());
+            final StringWriter stackTrace = new StringWriter();
+            exception.printStackTrace(new PrintWriter(stackTrace));
+            writeString(stackTrace.toString());
+        }
+        flushRecord();
+    }
+
+    /**
+     * Writes the pending record prefixed by its length.
+     *
+     * @throws IOException if the record cannot be written.
+     */
+    private void flushRecord() throws IOException {
+        recordOut.flush();
+        out.writeInt(record.size());
+        record.writeTo(out);
+        record.reset();
+    }
+
+    /**
+     * Returns the id of a string, writing a string record the first time
+     * the string is seen.
+     *
+     * @param value String
+     * @return the id or {@link #NULL_LENGTH} for <code>null</code>.
+     * @throws IOException if the string record cannot be written.
+     */
+    private int internString(final String value) throws IOException {
+        if (value == null) {
+            return NULL_LENGTH;
+        }
+        Integer id = stringIds.get(value);
+        if (id == null) {
+            id = stringIds.size();
+            stringIds.put(value, id);
+            recordOut.writeByte(RECORD_STRING);
+            recordOut.writeInt(id);
+            writeString(value);
+            flushRecord();
+        }
+        return id;
+    }
+
+    /**
+     * Writes a string to the current record.
+     *
+     * @param value String
+     * @throws IOException if the string cannot be written.
+     */
+    private void writeString(final String value) throws IOException {
+        if (value == null) {
+            recordOut.writeInt(NULL_LENGTH);
+        } else {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            recordOut.writeInt(bytes.length);
+            recordOut.write(bytes);
+        }
+    }
+}
@@ -31,19 +31,25 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 
-import net.ggtools.grand.ui.log.LogEvent.Level;
+import net.ggtools.grand.ui.Application;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.eclipse.jface.resource.ImageRegistry;
 import org.eclipse.jface.viewers.ILabelProviderListener;
 import org.eclipse.jface.viewers.ITableColorProvider;
 import org.eclipse.jface.viewers.ITableLabelProvider;
 import org.eclipse.swt.graphics.Color;
 import org.eclipse.swt.graphics.Image;
-import org.eclipse.swt.widgets.Display;
 
 /**
  * Table label provider for log events.
+ * <p>
+ * The level icons come from the application's image registry, or from a
+ * registry owned by the provider when running outside the application as
+ * in the {@link Analyzer}. The texts computed for a row are cached so that
+ * painting a row again allocates nothing.
+ * </p>
  *
  * @author Christophe Labouisse
  */
@@ -55,9 +61,14 @@ class LogLabelProvider implements ITableLabelProvider, ITableColorProvider {
     private static final Log LOG = LogFactory.getLog(LogLabelProvider.class);
 
     /**
-     * Field logLevelIcons.
+     * Field ownImageRegistry.
      */
-    private final Map<Level, Image> logLevelIcons = new HashMap<>();
+    private ImageRegistry ownImageRegistry;
+
+    /**
+     * Short names of the originators.
+     */
+    private final Map<String, String> shortOriginators = new HashMap<>();
 
     /**
      *
@@ -79,12 +90,11 @@ class LogLabelProvider implements ITableLabelProvider, ITableColorProvider {
      * @see org.eclipse.jface.viewers.IBaseLabelProvider#dispose()
      */
     public void dispose() {
-        for (final Map.Entry<Level, Image> entry : logLevelIcons.entrySet()) {
-            final Image image = entry.getValue();
-            if (image != null) {
-                image.dispose();
-            }
+        if (ownImageRegistry != null) {
+            ownImageRegistry.dispose();
+            ownImageRegistry = null;
         }
+        shortOriginators.clear();
     }
 
     /**
@@ -110,19 +120,8 @@ class LogLabelProvider implements ITableLabelProvider, ITableColorProvider {
 
         if (element instanceof LogEvent) {
             final LogEvent event = (LogEvent) element;
-            if (columnIndex == 0) {
-                final LogEvent.Level eventLevel = event.getLevel();
-
-                // As logLevelIcons may contains a null value, with check
-                // with containsKeys rather than get() == null.
-                if (logLevelIcons.containsKey(eventLevel)) {
-                    rc = logLevelIcons.get(eventLevel);
-                } else {
-                    final String resourceName = "resource/level_"
-                            + eventLevel.name.toLowerCase() + ".gif";
-                    rc = new Image(Display.getCurrent(),
-                            this.getClass().getResourceAsStream(resourceName));
-                }
+            if (columnIndex == LogViewer.CI_LEVEL) {
+                rc = getImageRegistry().get(LogViewer.getLevelIconKey(event.getLevel()));
             }
         }
         return rc;
@@ -146,16 +145,19 @@ class LogLabelProvider implements ITableLabelProvider, ITableColorProvider {
                 break;
 
             case LogViewer.CI_DATE:
-                rc = new Date(event.getTime()).toString();
+                rc = event.getTimeText();
+                if (rc == null) {
+                    rc = new Date(event.getTime()).toString();
+                    event.setTimeText(rc);
+                }
                 break;
 
             case LogViewer.CI_CLASS:
-                rc = event.getOriginator();
-                rc = rc.substring(rc.lastIndexOf('.') + 1);
+                rc = getShortOriginator(event.getOriginator());
                 break;
 
             case LogViewer.CI_MESSAGE:
-                rc = event.getMessage().toString();
+                rc = String.valueOf(event.getMessage());
                 break;
 
             default:
@@ -180,6 +182,41 @@ class LogLabelProvider implements ITableLabelProvider, ITableColorProvider {
         return null;
     }
 
+    /**
+     * Returns the registry holding the level icons.
+     *
+     * @return ImageRegistry
+     */
+    private ImageRegistry getImageRegistry() {
+        final Application application = Application.getInstance();
+        if (application != null && application.getImageRegistry() != null) {
+            return application.getImageRegistry();
+        }
+        if (ownImageRegistry == null) {
+            ownImageRegistry = new ImageRegistry();
+            LogViewer.registerLevelIcons(ownImageRegistry);
+        }
+        return ownImageRegistry;
+    }
+
+    /**
+     * Returns the originator without its package.
+     *
+     * @param originator String
+     * @return String
+     */
+    private String getShortOriginator(final String originator) {
+        if (originator == null) {
+            return "";
+        }
+        String shortName = shortOriginators.get(originator);
+        if (shortName == null) {
+            shortName = originator.substring(originator.lastIndexOf('.') + 1);
+            shortOriginators.put(originator, shortName);
+        }
+        return shortName;
+    }
+
     /**
      * Method isLabelProperty.
      * @param element Object
@@ -0,0 +1,238 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An inverted index over the originator, the message and the exception
+ * class of log events. Events are identified by their position in the
+ * {@link LogEventIndex}.
+ * <p>
+ * Texts are cut into words made of letters and digits, lower cased; camel
+ * case words are also indexed from each of their humps so that
+ * <code>controller</code> finds <code>GraphController</code>. A query is a
+ * list of words, an event matches if each word is the prefix of one of its
+ * indexed words.
+ * </p>
+ *
+ * @author Christophe Labouisse
+ */
+final class LogSearchIndex {
+
+    /**
+     * Positions of the events containing a word.
+     */
+    private static final class Postings {
+        /**
+         * Field positions.
+         */
+        private int[] positions = new int[4];
+
+        /**
+         * Field size.
+         */
+        private int size;
+
+        /**
+         * Adds a position, ignoring duplicates of the last one.
+         * @param position int
+         */
+        void add(final int position) {
+            if (size > 0 && positions[size - 1] == position) {
+                return;
+            }
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size++] = position;
+        }
+
+        /**
+         * Sets the bits of the positions.
+         * @param bits BitSet
+         */
+        void addTo(final BitSet bits) {
+            for (int i = 0; i < size; i++) {
+                bits.set(positions[i]);
+            }
+        }
+    }
+
+    /**
+     * Splits a query into lower case search words.
+     *
+     * @param query String
+     * @return the words, empty for a blank query.
+     */
+    static List<String> parseQuery(final String query) {
+        final List<String> words = new ArrayList<>();
+        if (query != null) {
+            tokenize(query, false, words);
+        }
+        return words;
+    }
+
+    /**
+     * Returns the indexed words of an event.
+     *
+     * @param event LogEvent
+     * @return List&lt;String&gt;
+     */
+    static List<String> wordsOf(final LogEvent event) {
+        final List<String> words = new ArrayList<>();
+        if (event.getOriginator() != null) {
+            tokenize(event.getOriginator(), true, words);
+        }
+        final Object message = event.getMessage();
+        if (message != null) {
+            tokenize(message.toString(), true, words);
+        }
+        if (event.getException() != null) {
+            tokenize(SavedException.getClassName(event.getException()), true, words);
+        }
+        return words;
+    }
+
+    /**
+     * Tells if an event matches a parsed query.
+     *
+     * @param event LogEvent
+     * @param queryWords the result of {@link #parseQuery(String)}.
+     * @return boolean
+     */
+    static boolean matches(final LogEvent event, final List<String> queryWords) {
+        final List<String> words = wordsOf(event);
+        for (final String queryWord : queryWords) {
+            boolean found = false;
+            for (final String word : words) {
+                if (word.startsWith(queryWord)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Cuts a text into lower case words.
+     *
+     * @param text String
+     * @param withHumps also add the camel case suffixes of the words.
+     * @param words the list receiving the words.
+     */
+    private static void tokenize(final String text, final boolean withHumps,
+            final List<String> words) {
+        final int length = text.length();
+        int start = -1;
+        for (int i = 0; i <= length; i++) {
+            final boolean inWord = i < length && Character.isLetterOrDigit(text.charAt(i));
+            if (inWord && start < 0) {
+                start = i;
+            } else if (!inWord && start >= 0) {
+                final String word = text.substring(start, i);
+                words.add(word.toLowerCase());
+                if (withHumps) {
+                    for (int j = start + 1; j < i; j++) {
+                        if (Character.isUpperCase(text.charAt(j))
+                                && Character.isLowerCase(text.charAt(j - 1))) {
+                            words.add(text.substring(j, i).toLowerCase());
+                        }
+                    }
+                }
+                start = -1;
+            }
+        }
+    }
+
+    /**
+     * Field words.
+     */
+    private final TreeMap<String, Postings> words = new TreeMap<>();
+
+    /**
+     * Indexes an event.
+     *
+     * @param position the position of the event in the log index.
+     * @param event LogEvent
+     */
+    void add(final int position, final LogEvent event) {
+        for (final String word : wordsOf(event)) {
+            Postings postings = words.get(word);
+            if (postings == null) {
+                postings = new Postings();
+                words.put(word, postings);
+            }
+            postings.add(position);
+        }
+    }
+
+    /**
+     * Removes all the events.
+     */
+    void clear() {
+        words.clear();
+    }
+
+    /**
+     * Returns the positions of the events matching a parsed query.
+     *
+     * @param queryWords the result of {@link #parseQuery(String)}, not empty.
+     * @return BitSet
+     */
+    BitSet search(final List<String> queryWords) {
+        BitSet result = null;
+        for (final String queryWord : queryWords) {
+            final BitSet wordMatches = new BitSet();
+            final SortedMap<String, Postings> prefixed =
+                    words.subMap(queryWord, queryWord + Character.MAX_VALUE);
+            for (final Map.Entry<String, Postings> entry : prefixed.entrySet()) {
+                entry.getValue().addTo(wordMatches);
+            }
+            if (result == null) {
+                result = wordMatches;
+            } else {
+                result.and(wordMatches);
+            }
+            if (result.isEmpty()) {
+                break;
+            }
+        }
+        return result == null ? new BitSet() : result;
+    }
+}
@@ -29,18 +29,21 @@ package net.ggtools.grand.ui.log;
 
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.ggtools.grand.ui.log.LogEvent.Level;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.resource.ImageDescriptor;
+import org.eclipse.jface.resource.ImageRegistry;
+import org.eclipse.jface.viewers.ILazyContentProvider;
 import org.eclipse.jface.viewers.ISelection;
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.Viewer;
-import org.eclipse.jface.viewers.ViewerFilter;
 import org.eclipse.swt.SWT;
 import org.eclipse.swt.events.SelectionAdapter;
 import org.eclipse.swt.events.SelectionEvent;
@@ -57,27 +60,49 @@ import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.TableColumn;
 import org.eclipse.swt.widgets.TableItem;
+import org.eclipse.swt.widgets.Text;
 
 /**
+ * A table displaying the content of a {@link LogEventBuffer}. The table is
+ * virtual: only the visible rows are materialized, the new events are
+ * appended to the existing rows and the level filtering relies on a
+ * {@link LogEventIndex}.
+ *
  * @author Christophe Labouisse
  */
 public class LogViewer extends Composite {
 
     /**
+     * Feeds the virtual table from the log event index.
      * @author Christophe Labouisse
      */
-    private final class LogEventFilter extends ViewerFilter {
+    private final class LogEventContentProvider implements ILazyContentProvider {
         /**
-         * Method select.
+         * Method dispose.
+         * @see org.eclipse.jface.viewers.IContentProvider#dispose()
+         */
+        public void dispose() {
+        }
+
+        /**
+         * Method inputChanged.
          * @param v Viewer
-         * @param parentElement Object
-         * @param element Object
-         * @return boolean
+         * @param oldInput Object
+         * @param newInput Object
+         * @see org.eclipse.jface.viewers.IContentProvider#inputChanged(Viewer, Object, Object)
          */
-        @Override
-        public boolean select(final Viewer v, final Object parentElement, final Object element) {
-            return element instanceof LogEvent
-                    && ((LogEvent) element).getLevel().value >= minLogLevel;
+        public void inputChanged(final Viewer v, final Object oldInput, final Object newInput) {
+        }
+
+        /**
+         * Method updateElement.
+         * @param index int
+         * @see org.eclipse.jface.viewers.ILazyContentProvider#updateElement(int)
+         */
+        public void updateElement(final int index) {
+            if (index < logIndex.getRowCount()) {
+                viewer.replace(logIndex.getRow(index), index);
+            }
         }
     }
 
@@ -92,10 +117,7 @@ public class LogViewer extends Composite {
          */
         public void logEventReceived(final LogEvent event) {
             if (refreshEnabled && (event.getLevel().value >= minLogLevel)) {
-                synchronized (refreshThread) {
-                    nextEvent = event;
-                    refreshThread.notify();
-                }
+                scheduleRefresh();
             }
         }
     }
@@ -191,8 +213,8 @@ public class LogViewer extends Composite {
                 dialog.setFilterExtensions(new String[]{"*.glg", "*.log", "*"});
                 final String logFileName = dialog.open();
                 if (logFileName != null) {
-                    try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(logFileName))) {
-                        oos.writeObject(LogEventBufferImpl.getInstance());
+                    try (FileOutputStream out = new FileOutputStream(logFileName)) {
+                        LogFileWriter.write(logBuffer, out);
                     } catch (final IOException exception) {
                         throw new RuntimeException("Cannot save log to " + logFileName, exception);
                     }
@@ -202,64 +224,22 @@ public class LogViewer extends Composite {
     }
 
     /**
-     * @author Christophe Labouisse
+     * Field DEFAULT_NUM_LINES.
+     * (value is {@value #DEFAULT_NUM_LINES})
      */
-    private final class ViewerRefreshThread extends Thread {
-
-        /**
-         * Field display.
-         */
-        private final Display display = getDisplay();
-
-        /**
-         * Field keepRunning.
-         */
-        private boolean keepRunning = true;
-
-        /**
-         * Method run.
-         * @see java.lang.Runnable#run()
-         */
-        @Override
-        public void run() {
-            while (keepRunning) {
-                final LogEvent myEvent;
-                synchronized (this) {
-                    myEvent = nextEvent;
-                    nextEvent = null;
-                }
-
-                if (myEvent != null) {
-                    display.syncExec(LogViewer.this::refreshViewer);
-                }
-
-                try {
-                    sleep(1000L);
-                    synchronized (this) {
-                        wait();
-                    }
-                } catch (final InterruptedException e) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug("Thread interrupted", e);
-                    }
-                }
-            }
-        }
+    private static final int DEFAULT_NUM_LINES = 10;
 
-        /**
-         * Method stopThread.
-         */
-        private void stopThread() {
-            keepRunning = false;
-            interrupt();
-        }
-    }
+    /**
+     * Minimum delay between two refreshes of the table in milliseconds.
+     * (value is {@value #FRAME_BUDGET})
+     */
+    private static final int FRAME_BUDGET = 100;
 
     /**
-     * Field DEFAULT_NUM_LINES.
-     * (value is {@value #DEFAULT_NUM_LINES})
+     * Field SEARCH_WIDTH.
+     * (value is {@value #SEARCH_WIDTH})
      */
-    private static final int DEFAULT_NUM_LINES = 10;
+    private static final int SEARCH_WIDTH = 200;
 
     /**
      * Field HEADER_EXTRA_WIDTH.
@@ -304,29 +284,80 @@ public class LogViewer extends Composite {
             new String[]{"Lvl", "Date", "Class", "Message"};
 
     /**
-     * Field eventLevelFilter.
+     * Field LEVEL_ICON_PREFIX.
+     * (value is {@value #LEVEL_ICON_PREFIX})
+     */
+    private static final String LEVEL_ICON_PREFIX = "net.ggtools.grand.ui.log.level.";
+
+    /**
+     * Field LEVELS.
+     */
+    private static final Level[] LEVELS = {LogEvent.TRACE, LogEvent.DEBUG,
+            LogEvent.INFO, LogEvent.WARNING, LogEvent.ERROR, LogEvent.FATAL};
+
+    /**
+     * Returns the key of the icon of a level in an image registry filled
+     * with {@link #registerLevelIcons(ImageRegistry)}.
+     *
+     * @param level Level
+     * @return String
      */
-    private LogEventFilter eventLevelFilter;
+    public static String getLevelIconKey(final Level level) {
+        return LEVEL_ICON_PREFIX + level.name.toLowerCase();
+    }
+
+    /**
+     * Registers the icons of the log levels. The images are loaded the
+     * first time they are used.
+     *
+     * @param registry ImageRegistry
+     */
+    public static void registerLevelIcons(final ImageRegistry registry) {
+        for (final Level level : LEVELS) {
+            registry.put(getLevelIconKey(level), ImageDescriptor.createFromFile(LogViewer.class,
+                    "resource/level_" + level.name.toLowerCase() + ".gif"));
+        }
+    }
+
+    /**
+     * Field droppedLabel.
+     */
+    private Label droppedLabel;
+
+    /**
+     * Field display.
+     */
+    private final Display display;
+
+    /**
+     * Field droppedAtReload.
+     */
+    private long droppedAtReload;
 
     /**
      * Field logBuffer.
      */
     private LogEventBuffer logBuffer;
 
+    /**
+     * Field logIndex.
+     */
+    private final LogEventIndex logIndex = new LogEventIndex();
+
     /**
      * Field minLogLevel.
      */
-    private int minLogLevel = LogEvent.INFO.value;
+    private volatile int minLogLevel = LogEvent.INFO.value;
 
     /**
-     * Field nextEvent.
+     * Field lastRefresh.
      */
-    private LogEvent nextEvent = null;
+    private long lastRefresh;
 
     /**
      * Field refreshEnabled.
      */
-    private boolean refreshEnabled = true;
+    private volatile boolean refreshEnabled = true;
 
     /**
      * Field refreshListener.
@@ -334,9 +365,19 @@ public class LogViewer extends Composite {
     private LogEventRefreshListener refreshListener;
 
     /**
-     * Field refreshThread.
+     * Field refreshScheduled.
+     */
+    private final AtomicBoolean refreshScheduled = new AtomicBoolean();
+
+    /**
+     * Field refreshTask.
+     */
+    private final Runnable refreshTask = this::scheduledRefresh;
+
+    /**
+     * Field searchText.
      */
-    private final ViewerRefreshThread refreshThread;
+    private Text searchText;
 
     /**
      * Field table.
@@ -354,7 +395,7 @@ public class LogViewer extends Composite {
      */
     public LogViewer(final Composite parent, final int style) {
         super(parent, style);
-        refreshThread = new ViewerRefreshThread();
+        display = parent.getDisplay();
         createContents(this);
     }
 
@@ -366,7 +407,7 @@ public class LogViewer extends Composite {
         if (LOG.isDebugEnabled()) {
             LOG.debug("Disposing LogViewer");
         }
-        stopRefreshThread();
+        detachFromBuffer();
         super.dispose();
     }
 
@@ -388,7 +429,8 @@ public class LogViewer extends Composite {
 
         logBuffer = newLogBuffer;
         logBuffer.addListener(refreshListener);
-        viewer.setInput(logBuffer.getEventList());
+        reloadEvents();
+        refreshViewer();
     }
 
     /**
@@ -415,12 +457,26 @@ public class LogViewer extends Composite {
                 if (e.widget instanceof Combo) {
                     final Combo selectedCombo = (Combo) e.widget;
                     minLogLevel = comboIndexToLogLevel(selectedCombo.getSelectionIndex());
-                    viewer.refresh(false);
+                    applyFilter();
                 }
             }
 
         });
 
+        searchText = new Text(composite, SWT.SEARCH | SWT.ICON_SEARCH | SWT.ICON_CANCEL);
+        layout.numColumns++;
+        final GridData searchGridData = new GridData(SWT.BEGINNING, SWT.CENTER, false, false);
+        searchGridData.widthHint = SEARCH_WIDTH;
+        searchText.setLayoutData(searchGridData);
+        searchText.setMessage("Search");
+        searchText.setToolTipText("Words to look for in the class, message and exception");
+        searchText.addModifyListener(e -> applyFilter());
+
+        droppedLabel = new Label(composite, SWT.NONE);
+        layout.numColumns++;
+        droppedLabel.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false));
+        droppedLabel.setToolTipText("Events discarded to keep the log buffer within its capacity");
+
         final Button refreshToggle = new Button(composite, SWT.CHECK);
         layout.numColumns++;
         refreshToggle.setLayoutData(new GridData(SWT.END, SWT.CENTER, true, false));
@@ -467,7 +523,8 @@ public class LogViewer extends Composite {
             public void widgetSelected(final SelectionEvent e) {
                 if (e.widget instanceof Button) {
                     logBuffer.clearLogEvents();
-                    viewer.refresh();
+                    reloadEvents();
+                    refreshViewer();
                 }
             }
         });
@@ -484,7 +541,6 @@ public class LogViewer extends Composite {
         createCommands(composite);
         createViewer(composite);
         refreshListener = new LogEventRefreshListener();
-        refreshThread.start();
     }
 
     /**
@@ -494,12 +550,13 @@ public class LogViewer extends Composite {
     @SuppressWarnings("unchecked")
     private void createViewer(final Composite parent) {
         viewer = new TableViewer(parent, SWT.READ_ONLY | SWT.H_SCROLL
-                | SWT.V_SCROLL | SWT.HIDE_SELECTION);
+                | SWT.V_SCROLL | SWT.HIDE_SELECTION | SWT.VIRTUAL);
         final LogLabelProvider logLabelProvider = new LogLabelProvider();
-        viewer.setContentProvider(new ArrayContentProvider());
+        viewer.setUseHashlookup(true);
+        viewer.setContentProvider(new LogEventContentProvider());
         viewer.setLabelProvider(logLabelProvider);
-        eventLevelFilter = new LogEventFilter();
-        viewer.addFilter(eventLevelFilter);
+        viewer.setInput(logIndex);
+        logIndex.setFilter(minLogLevel, null);
 
         table = viewer.getTable();
         table.setHeaderVisible(true);
@@ -551,7 +608,7 @@ public class LogViewer extends Composite {
             if (LOG.isTraceEnabled()) {
                 LOG.trace("Table disposed");
             }
-            stopRefreshThread();
+            detachFromBuffer();
         });
 
         viewer.addDoubleClickListener(event -> {
@@ -570,29 +627,101 @@ public class LogViewer extends Composite {
     }
 
     /**
-     *
+     * Applies the level and the search query to the table.
+     */
+    private void applyFilter() {
+        logIndex.setFilter(minLogLevel, searchText.getText());
+        table.clearAll();
+        updateItemCount();
+    }
+
+    /**
+     * Rebuilds the index from the whole content of the log buffer.
+     */
+    private void reloadEvents() {
+        logIndex.clear();
+        droppedAtReload = logBuffer.getDroppedCount();
+        logIndex.append(logBuffer.getEventList());
+        table.clearAll();
+    }
+
+    /**
+     * Appends the events logged since the last refresh. The rows of the
+     * events dropped from the buffer in the meantime are kept until they
+     * make up half of the table, the whole index is rebuilt then.
      */
     private void refreshViewer() {
         if (!table.isDisposed()) {
-            viewer.refresh(false);
-            table.showItem(table.getItem(table.getItemCount() - 1));
+            if (logBuffer == null) {
+                return;
+            }
+            final long dropped = logBuffer.getDroppedCount();
+            if ((dropped - droppedAtReload) * 2 > logIndex.size()) {
+                reloadEvents();
+            } else {
+                logIndex.append(logBuffer.getEventsAfter(logIndex.getLastSequence()));
+            }
+            droppedLabel.setText("Dropped: " + dropped);
+            updateItemCount();
+            final int itemCount = table.getItemCount();
+            if (itemCount > 0) {
+                table.showItem(table.getItem(itemCount - 1));
+            }
         } else {
             LOG.warn("Table is disposed");
         }
     }
 
     /**
-     *
+     * Sets the number of rows of the virtual table for the current level.
      */
-    private void stopRefreshThread() {
+    private void updateItemCount() {
+        viewer.setItemCount(logIndex.getRowCount());
+    }
+
+    /**
+     * Stops listening to the log buffer.
+     */
+    private void detachFromBuffer() {
         if (LOG.isDebugEnabled()) {
-            LOG.debug("Stopping refresh thread");
+            LOG.debug("Detaching from log buffer");
         }
-        refreshThread.stopThread();
-        try {
-            refreshThread.join();
-        } catch (final InterruptedException e) {
-            LOG.warn("Caught exception stopping refresh thread", e);
+        if (logBuffer != null) {
+            logBuffer.removeListener(refreshListener);
+        }
+    }
+
+    /**
+     * Requests a refresh of the table. May be called from any thread and
+     * never blocks: the refresh is run on the display thread no sooner
+     * than {@link #FRAME_BUDGET} ms after the previous one and all the
+     * requests made until it starts are served by this single refresh.
+     */
+    private void scheduleRefresh() {
+        if (refreshScheduled.compareAndSet(false, true)) {
+            if (display.isDisposed()) {
+                return;
+            }
+            display.asyncExec(() -> {
+                if (isDisposed()) {
+                    return;
+                }
+                final long elapsed = System.currentTimeMillis() - lastRefresh;
+                display.timerExec((int) Math.max(0, FRAME_BUDGET - elapsed), refreshTask);
+            });
+        }
+    }
+
+    /**
+     * Runs a scheduled refresh. The flag is reset before reading the buffer
+     * so an event logged during the refresh triggers another one: the last
+     * event is always displayed.
+     */
+    private void scheduledRefresh() {
+        refreshScheduled.set(false);
+        if (!isDisposed() && refreshEnabled) {
+            lastRefresh = System.currentTimeMillis();
+            refreshViewer();
         }
     }
 
@@ -0,0 +1,111 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.log;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+
+/**
+ * Stands for an exception read from a log file: the original class may not
+ * be available so only its name, its message and its printed stack trace
+ * are kept.
+ *
+ * @author Christophe Labouisse
+ */
+final class SavedException extends Throwable {
+
+    /**
+     * Comment for <code>serialVersionUID</code>.
+     */
+    private static final long serialVersionUID = -5377140211283096152L;
+
+    /**
+     * Returns the name of the class of an exception, the original one for
+     * saved exceptions.
+     *
+     * @param exception Throwable
+     * @return String
+     */
+    static String getClassName(final Throwable exception) {
+        if (exception instanceof SavedException) {
+            return ((SavedException) exception).className;
+        }
+        return exception.getClass().getName();
+    }
+
+    /**
+     * Field className.
+     */
+    private final String className;
+
+    /**
+     * Field stackTrace.
+     */
+    private final String stackTrace;
+
+    /**
+     * Constructor for SavedException.
+     * @param className String
+     * @param message String
+     * @param stackTrace String
+     */
+    SavedException(final String className, final String message,
+            final String stackTrace) {
+        super(message, null, false, false);
+        this.className = className;
+        this.stackTrace = stackTrace;
+    }
+
+    /**
+     * Method printStackTrace.
+     * @param s PrintStream
+     */
+    @Override
+    public void printStackTrace(final PrintStream s) {
+        s.print(stackTrace);
+    }
+
+    /**
+     * Method printStackTrace.
+     * @param s PrintWriter
+     */
+    @Override
+    public void printStackTrace(final PrintWriter s) {
+        s.print(stackTrace);
+    }
+
+    /**
+     * Method toString.
+     * @return String
+     */
+    @Override
+    public String toString() {
+        final String message = getLocalizedMessage();
+        return message == null ? className : className + ": " + message;
+    }
+}
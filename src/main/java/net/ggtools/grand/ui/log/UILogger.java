@@ -27,9 +27,17 @@
  */
 package net.ggtools.grand.ui.log;
 
+import net.ggtools.grand.ui.log.LogEvent.Level;
+
 import org.apache.commons.logging.Log;
 
 /**
+ * A logger forwarding to an underlying logger and storing the events in the
+ * {@link LogEventBufferImpl}. Nothing is computed for a level which is
+ * neither enabled in the underlying logger nor captured by the buffer;
+ * {@link LazyMessage}s are resolved only once the event is known to be
+ * needed.
+ *
  * @author Christophe Labouisse
  */
 final class UILogger implements Log {
@@ -60,13 +68,33 @@ final class UILogger implements Log {
         logBuffer = LogEventBufferImpl.getInstance();
     }
 
+    /**
+     * Resolves a message and stores it in the log buffer if its level is
+     * captured.
+     *
+     * @param level Level
+     * @param message Object
+     * @param t Throwable
+     * @return the resolved message.
+     */
+    private Object capture(final Level level, final Object message, final Throwable t) {
+        final Object resolved = LazyMessage.resolve(message);
+        if (logBuffer.isCaptured(level)) {
+            logBuffer.addLogEvent(level, name, resolved, t);
+        }
+        return resolved;
+    }
+
     /**
      * @param message Object
      * @see org.apache.commons.logging.Log#debug(Object)
      */
     public void debug(final Object message) {
-        underlying.debug(message);
-        logBuffer.addLogEvent(LogEvent.DEBUG, name, message);
+        if (underlying.isDebugEnabled()) {
+            underlying.debug(capture(LogEvent.DEBUG, message, null));
+        } else if (logBuffer.isCaptured(LogEvent.DEBUG)) {
+            capture(LogEvent.DEBUG, message, null);
+        }
     }
 
     /**
@@ -75,8 +103,11 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#debug(Object, Throwable)
      */
     public void debug(final Object message, final Throwable t) {
-        underlying.debug(message, t);
-        logBuffer.addLogEvent(LogEvent.DEBUG, name, message, t);
+        if (underlying.isDebugEnabled()) {
+            underlying.debug(capture(LogEvent.DEBUG, message, t), t);
+        } else if (logBuffer.isCaptured(LogEvent.DEBUG)) {
+            capture(LogEvent.DEBUG, message, t);
+        }
     }
 
     /**
@@ -84,8 +115,11 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#error(Object)
      */
     public void error(final Object message) {
-        underlying.error(message);
-        logBuffer.addLogEvent(LogEvent.ERROR, name, message);
+        if (underlying.isErrorEnabled()) {
+            underlying.error(capture(LogEvent.ERROR, message, null));
+        } else if (logBuffer.isCaptured(LogEvent.ERROR)) {
+            capture(LogEvent.ERROR, message, null);
+        }
     }
 
     /**
@@ -94,8 +128,11 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#error(Object, Throwable)
      */
     public void error(final Object message, final Throwable t) {
-        underlying.error(message, t);
-        logBuffer.addLogEvent(LogEvent.ERROR, name, message, t);
+        if (underlying.isErrorEnabled()) {
+            underlying.error(capture(LogEvent.ERROR, message, t), t);
+        } else if (logBuffer.isCaptured(LogEvent.ERROR)) {
+            capture(LogEvent.ERROR, message, t);
+        }
     }
 
     /**
@@ -103,8 +140,11 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#fatal(Object)
      */
     public void fatal(final Object message) {
-        underlying.fatal(message);
-        logBuffer.addLogEvent(LogEvent.FATAL, name, message);
+        if (underlying.isFatalEnabled()) {
+            underlying.fatal(capture(LogEvent.FATAL, message, null));
+        } else if (logBuffer.isCaptured(LogEvent.FATAL)) {
+            capture(LogEvent.FATAL, message, null);
+        }
     }
 
     /**
@@ -113,8 +153,11 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#fatal(Object, Throwable)
      */
     public void fatal(final Object message, final Throwable t) {
-        underlying.fatal(message, t);
-        logBuffer.addLogEvent(LogEvent.FATAL, name, message, t);
+        if (underlying.isFatalEnabled()) {
+            underlying.fatal(capture(LogEvent.FATAL, message, t), t);
+        } else if (logBuffer.isCaptured(LogEvent.FATAL)) {
+            capture(LogEvent.FATAL, message, t);
+        }
     }
 
     /**
@@ -122,8 +165,11 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#info(Object)
      */
     public void info(final Object message) {
-        underlying.info(message);
-        logBuffer.addLogEvent(LogEvent.INFO, name, message);
+        if (underlying.isInfoEnabled()) {
+            underlying.info(capture(LogEvent.INFO, message, null));
+        } else if (logBuffer.isCaptured(LogEvent.INFO)) {
+            capture(LogEvent.INFO, message, null);
+        }
     }
 
     /**
@@ -132,8 +178,11 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#info(Object, Throwable)
      */
     public void info(final Object message, final Throwable t) {
-        underlying.info(message, t);
-        logBuffer.addLogEvent(LogEvent.INFO, name, message, t);
+        if (underlying.isInfoEnabled()) {
+            underlying.info(capture(LogEvent.INFO, message, t), t);
+        } else if (logBuffer.isCaptured(LogEvent.INFO)) {
+            capture(LogEvent.INFO, message, t);
+        }
     }
 
     /**
@@ -141,7 +190,7 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#isDebugEnabled()
      */
     public boolean isDebugEnabled() {
-        return underlying.isDebugEnabled();
+        return logBuffer.isCaptured(LogEvent.DEBUG) || underlying.isDebugEnabled();
     }
 
     /**
@@ -149,7 +198,7 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#isErrorEnabled()
      */
     public boolean isErrorEnabled() {
-        return underlying.isErrorEnabled();
+        return logBuffer.isCaptured(LogEvent.ERROR) || underlying.isErrorEnabled();
     }
 
     /**
@@ -157,7 +206,7 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#isFatalEnabled()
      */
     public boolean isFatalEnabled() {
-        return underlying.isFatalEnabled();
+        return logBuffer.isCaptured(LogEvent.FATAL) || underlying.isFatalEnabled();
     }
 
     /**
@@ -165,7 +214,7 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#isInfoEnabled()
      */
     public boolean isInfoEnabled() {
-        return underlying.isInfoEnabled();
+        return logBuffer.isCaptured(LogEvent.INFO) || underlying.isInfoEnabled();
     }
 
     /**
@@ -173,7 +222,7 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#isTraceEnabled()
      */
     public boolean isTraceEnabled() {
-        return underlying.isTraceEnabled();
+        return logBuffer.isCaptured(LogEvent.TRACE) || underlying.isTraceEnabled();
     }
 
     /**
@@ -181,7 +230,7 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#isWarnEnabled()
      */
     public boolean isWarnEnabled() {
-        return underlying.isWarnEnabled();
+        return logBuffer.isCaptured(LogEvent.WARNING) || underlying.isWarnEnabled();
     }
 
     /**
@@ -189,8 +238,11 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#trace(Object)
      */
     public void trace(final Object message) {
-        underlying.trace(message);
-        logBuffer.addLogEvent(LogEvent.TRACE, name, message);
+        if (underlying.isTraceEnabled()) {
+            underlying.trace(capture(LogEvent.TRACE, message, null));
+        } else if (logBuffer.isCaptured(LogEvent.TRACE)) {
+            capture(LogEvent.TRACE, message, null);
+        }
     }
 
     /**
@@ -199,8 +251,11 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#trace(Object, Throwable)
      */
     public void trace(final Object message, final Throwable t) {
-        underlying.trace(message, t);
-        logBuffer.addLogEvent(LogEvent.TRACE, name, message, t);
+        if (underlying.isTraceEnabled()) {
+            underlying.trace(capture(LogEvent.TRACE, message, t), t);
+        } else if (logBuffer.isCaptured(LogEvent.TRACE)) {
+            capture(LogEvent.TRACE, message, t);
+        }
     }
 
     /**
@@ -208,8 +263,11 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#warn(Object)
      */
     public void warn(final Object message) {
-        underlying.warn(message);
-        logBuffer.addLogEvent(LogEvent.WARNING, name, message);
+        if (underlying.isWarnEnabled()) {
+            underlying.warn(capture(LogEvent.WARNING, message, null));
+        } else if (logBuffer.isCaptured(LogEvent.WARNING)) {
+            capture(LogEvent.WARNING, message, null);
+        }
     }
 
     /**
@@ -218,7 +276,10 @@ final class UILogger implements Log {
      * @see org.apache.commons.logging.Log#warn(Object, Throwable)
      */
     public void warn(final Object message, final Throwable t) {
-        underlying.warn(message, t);
-        logBuffer.addLogEvent(LogEvent.WARNING, name, message, t);
+        if (underlying.isWarnEnabled()) {
+            underlying.warn(capture(LogEvent.WARNING, message, t), t);
+        } else if (logBuffer.isCaptured(LogEvent.WARNING)) {
+            capture(LogEvent.WARNING, message, t);
+        }
     }
 }
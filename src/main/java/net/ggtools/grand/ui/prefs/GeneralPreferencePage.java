@@ -27,7 +27,13 @@
  */
 package net.ggtools.grand.ui.prefs;
 
+import net.ggtools.grand.ui.log.LogEvent;
+import net.ggtools.grand.ui.log.LogEvent.Level;
+import net.ggtools.grand.ui.log.LogEventBufferImpl;
+
+import org.eclipse.jface.preference.ComboFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
+import org.eclipse.jface.preference.IPreferenceStore;
 import org.eclipse.swt.widgets.Composite;
 
 /**
@@ -35,6 +41,37 @@ import org.eclipse.swt.widgets.Composite;
  */
 public class GeneralPreferencePage extends FieldEditorPreferencePage
         implements PreferenceKeys {
+    /**
+     * Field MAX_LOG_BUFFER_CAPACITY.
+     * (value is {@value #MAX_LOG_BUFFER_CAPACITY})
+     */
+    private static final int MAX_LOG_BUFFER_CAPACITY = 1000000;
+
+    /**
+     * Field LOG_BUFFER_INCREMENT.
+     * (value is {@value #LOG_BUFFER_INCREMENT})
+     */
+    private static final int LOG_BUFFER_INCREMENT = 100;
+
+    /**
+     * Field CAPTURE_LEVELS.
+     */
+    private static final Level[] CAPTURE_LEVELS = {LogEvent.TRACE, LogEvent.DEBUG,
+            LogEvent.INFO, LogEvent.WARNING, LogEvent.ERROR, LogEvent.FATAL};
+
+    /**
+     * Method setDefaults.
+     * @param prefs IPreferenceStore
+     */
+    public static void setDefaults(final IPreferenceStore prefs) {
+        prefs.setDefault(MAX_RECENT_FILES_PREFS_KEY, 4);
+        prefs.setDefault(LOG_BUFFER_CAPACITY, LogEventBufferImpl.DEFAULT_CAPACITY);
+        prefs.setDefault(LOG_BUFFER_ERROR_QUOTA, LogEventBufferImpl.DEFAULT_ERROR_QUOTA);
+        prefs.setDefault(LOG_BUFFER_WARNING_QUOTA, LogEventBufferImpl.DEFAULT_WARNING_QUOTA);
+        prefs.setDefault(LOG_BUFFER_INFO_QUOTA, LogEventBufferImpl.DEFAULT_INFO_QUOTA);
+        prefs.setDefault(LOG_CAPTURE_LEVEL, LogEventBufferImpl.DEFAULT_CAPTURE_LEVEL.value);
+    }
+
     /**
      *
      */
@@ -53,6 +90,39 @@ public class GeneralPreferencePage extends FieldEditorPreferencePage
                 "Max Recent Files", parent);
         maxFiles.setValidRange(1, 9);
         addField(maxFiles);
+
+        final String[][] levels = new String[CAPTURE_LEVELS.length][];
+        for (int i = 0; i < CAPTURE_LEVELS.length; i++) {
+            levels[i] = new String[]{CAPTURE_LEVELS[i].name,
+                    Integer.toString(CAPTURE_LEVELS[i].value)};
+        }
+        addField(new ComboFieldEditor(LOG_CAPTURE_LEVEL, "Minimum captured log level",
+                levels, parent));
+
+        final SpinnerFieldEditor logCapacity = new SpinnerFieldEditor(LOG_BUFFER_CAPACITY,
+                "Log buffer capacity (events)", parent);
+        logCapacity.setValidRange(LOG_BUFFER_INCREMENT, MAX_LOG_BUFFER_CAPACITY);
+        logCapacity.setIncrement(LOG_BUFFER_INCREMENT);
+        addField(logCapacity);
+
+        addField(createQuotaField(LOG_BUFFER_ERROR_QUOTA, "Errors always kept", parent));
+        addField(createQuotaField(LOG_BUFFER_WARNING_QUOTA, "Warnings always kept", parent));
+        addField(createQuotaField(LOG_BUFFER_INFO_QUOTA, "Infos always kept", parent));
+    }
+
+    /**
+     * Creates an editor for one of the per level log retention quotas.
+     * @param name String
+     * @param labelText String
+     * @param parent Composite
+     * @return SpinnerFieldEditor
+     */
+    private SpinnerFieldEditor createQuotaField(final String name, final String labelText,
+            final Composite parent) {
+        final SpinnerFieldEditor quota = new SpinnerFieldEditor(name, labelText, parent);
+        quota.setValidRange(0, MAX_LOG_BUFFER_CAPACITY);
+        quota.setIncrement(LOG_BUFFER_INCREMENT);
+        return quota;
     }
 
 }
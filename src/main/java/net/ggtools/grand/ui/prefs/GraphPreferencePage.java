@@ -45,6 +45,10 @@ public class GraphPreferencePage extends FieldEditorPreferencePage
         prefs.setDefault(GRAPH_BUS_ENABLED_DEFAULT, false);
         prefs.setDefault(GRAPH_BUS_IN_THRESHOLD, 5);
         prefs.setDefault(GRAPH_BUS_OUT_THRESHOLD, 5);
+        prefs.setDefault(GRAPH_LAYOUT_TIMEOUT, 60);
+        prefs.setDefault(GRAPH_LAYOUT_COMPONENTS, false);
+        prefs.setDefault(GRAPH_DETAIL_ZOOM, 40);
+        prefs.setDefault(GRAPH_TILE_CACHE, 0);
     }
 
     /**
@@ -75,6 +79,23 @@ public class GraphPreferencePage extends FieldEditorPreferencePage
                         "Bus routing out threshold", parent);
         outThreshold.setValidRange(1, 99);
         addField(outThreshold);
+        final SpinnerFieldEditor layoutTimeout =
+                new SpinnerFieldEditor(GRAPH_LAYOUT_TIMEOUT,
+                        "Layout timeout in seconds (0 for none)", parent);
+        layoutTimeout.setValidRange(0, 999);
+        addField(layoutTimeout);
+        addField(new BooleanFieldEditor(GRAPH_LAYOUT_COMPONENTS,
+                "Lay out connected components separately", parent));
+        final SpinnerFieldEditor detailZoom =
+                new SpinnerFieldEditor(GRAPH_DETAIL_ZOOM,
+                        "Simplified drawing below zoom in % (0 for never)", parent);
+        detailZoom.setValidRange(0, 100);
+        addField(detailZoom);
+        final SpinnerFieldEditor tileCache =
+                new SpinnerFieldEditor(GRAPH_TILE_CACHE,
+                        "Tile cache size in MB (0 to disable)", parent);
+        tileCache.setValidRange(0, 1024);
+        addField(tileCache);
     }
 
 }
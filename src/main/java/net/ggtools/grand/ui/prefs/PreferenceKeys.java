@@ -73,6 +73,36 @@ public interface PreferenceKeys {
      */
     String GRAPH_BUS_IN_THRESHOLD = GRAPH_PREFIX + "bus.in.threshold";
 
+    /**
+     * Field GRAPH_LAYOUT_TIMEOUT.
+     * (value is {@value #GRAPH_LAYOUT_TIMEOUT})
+     */
+    String GRAPH_LAYOUT_TIMEOUT = GRAPH_PREFIX + "layout.timeout";
+
+    /**
+     * Field GRAPH_LAYOUT_COMPONENTS.
+     * (value is {@value #GRAPH_LAYOUT_COMPONENTS})
+     */
+    String GRAPH_LAYOUT_COMPONENTS = GRAPH_PREFIX + "layout.components";
+
+    /**
+     * Field GRAPH_RENDER_PREFIX.
+     * (value is {@value #GRAPH_RENDER_PREFIX})
+     */
+    String GRAPH_RENDER_PREFIX = GRAPH_PREFIX + "render.";
+
+    /**
+     * Field GRAPH_DETAIL_ZOOM.
+     * (value is {@value #GRAPH_DETAIL_ZOOM})
+     */
+    String GRAPH_DETAIL_ZOOM = GRAPH_RENDER_PREFIX + "detail.zoom";
+
+    /**
+     * Field GRAPH_TILE_CACHE.
+     * (value is {@value #GRAPH_TILE_CACHE})
+     */
+    String GRAPH_TILE_CACHE = GRAPH_RENDER_PREFIX + "tile.cache";
+
     /**
      * Field LINK_SUBANT_COLOR.
      * (value is {@value #LINK_SUBANT_COLOR})
@@ -108,4 +138,40 @@ public interface PreferenceKeys {
      * (value is {@value #LINK_DEFAULT_LINEWIDTH})
      */
     String LINK_DEFAULT_LINEWIDTH = GRAPH_PREFIX + "link.default.linewidth";
+
+    /**
+     * Field LOG_PREFIX.
+     * (value is {@value #LOG_PREFIX})
+     */
+    String LOG_PREFIX = "log.";
+
+    /**
+     * Field LOG_BUFFER_CAPACITY.
+     * (value is {@value #LOG_BUFFER_CAPACITY})
+     */
+    String LOG_BUFFER_CAPACITY = LOG_PREFIX + "buffer.capacity";
+
+    /**
+     * Field LOG_BUFFER_ERROR_QUOTA.
+     * (value is {@value #LOG_BUFFER_ERROR_QUOTA})
+     */
+    String LOG_BUFFER_ERROR_QUOTA = LOG_PREFIX + "buffer.quota.error";
+
+    /**
+     * Field LOG_BUFFER_WARNING_QUOTA.
+     * (value is {@value #LOG_BUFFER_WARNING_QUOTA})
+     */
+    String LOG_BUFFER_WARNING_QUOTA = LOG_PREFIX + "buffer.quota.warning";
+
+    /**
+     * Field LOG_BUFFER_INFO_QUOTA.
+     * (value is {@value #LOG_BUFFER_INFO_QUOTA})
+     */
+    String LOG_BUFFER_INFO_QUOTA = LOG_PREFIX + "buffer.quota.info";
+
+    /**
+     * Field LOG_CAPTURE_LEVEL.
+     * (value is {@value #LOG_CAPTURE_LEVEL})
+     */
+    String LOG_CAPTURE_LEVEL = LOG_PREFIX + "capture.level";
 }
@@ -216,6 +216,7 @@ public class GraphWindow extends ApplicationWindow
         graphTabItem.setOutlinePanelVisible(outlinePanelVisible);
         tabFolder.setSelection(graphTabItem);
         controllerAvailableDispatcher.dispatch(controller);
+        getStatusLineManager().setCancelEnabled(true);
         controller.setProgressMonitor(new SafeProgressMonitor(getStatusLineManager()
                 .getProgressMonitor(), display));
         return graphTabItem;
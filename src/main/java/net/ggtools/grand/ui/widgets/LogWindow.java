@@ -32,13 +32,17 @@ import net.ggtools.grand.ui.log.LogViewer;
 
 import org.eclipse.jface.window.Window;
 import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.Composite;
 import org.eclipse.swt.widgets.Control;
 import org.eclipse.swt.widgets.Shell;
+import org.eclipse.swt.widgets.TabFolder;
+import org.eclipse.swt.widgets.TabItem;
 
 /**
- * Window containing a {@link net.ggtools.grand.ui.log.LogViewer} widget.
+ * Window containing a {@link net.ggtools.grand.ui.log.LogViewer} widget and
+ * a {@link PerformanceViewer} in separate tabs.
  *
  * @author Christophe Labouisse
  */
@@ -79,8 +83,18 @@ public class LogWindow extends Window {
     protected final Control createContents(final Composite parent) {
         final GridLayout layout = new GridLayout();
         parent.setLayout(layout);
-        viewer = new LogViewer(parent, SWT.BORDER);
+        final TabFolder tabFolder = new TabFolder(parent, SWT.NONE);
+        tabFolder.setLayoutData(new GridData(GridData.FILL_BOTH));
+
+        final TabItem logTab = new TabItem(tabFolder, SWT.NONE);
+        logTab.setText("Log");
+        viewer = new LogViewer(tabFolder, SWT.BORDER);
         viewer.setLogBuffer(LogEventBufferImpl.getInstance());
+        logTab.setControl(viewer);
+
+        final TabItem performanceTab = new TabItem(tabFolder, SWT.NONE);
+        performanceTab.setText("Performance");
+        performanceTab.setControl(new PerformanceViewer(tabFolder, SWT.NONE));
         return parent;
     }
 }
@@ -0,0 +1,196 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.widgets;
+
+import java.io.File;
+import java.text.DateFormat;
+import java.util.Date;
+
+import net.ggtools.grand.ui.graph.LoadMetrics;
+import net.ggtools.grand.ui.graph.PipelineMetrics;
+import net.ggtools.grand.ui.graph.PipelineMetricsListener;
+
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.layout.GridLayout;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.swt.widgets.TableItem;
+
+/**
+ * Displays the timings of the last runs of the graph pipeline, one row per
+ * run with the duration of each phase in milliseconds.
+ *
+ * @author Christophe Labouisse
+ */
+public class PerformanceViewer extends Composite implements PipelineMetricsListener {
+
+    /**
+     * Field BYTES_PER_MB.
+     * (value is {@value #BYTES_PER_MB})
+     */
+    private static final double BYTES_PER_MB = 1024.0 * 1024.0;
+
+    /**
+     * Field NANOS_PER_MILLI.
+     * (value is {@value #NANOS_PER_MILLI})
+     */
+    private static final long NANOS_PER_MILLI = 1000000L;
+
+    /**
+     * Field COLUMN_WIDTH.
+     * (value is {@value #COLUMN_WIDTH})
+     */
+    private static final int COLUMN_WIDTH = 70;
+
+    /**
+     * Field FILE_COLUMN_WIDTH.
+     * (value is {@value #FILE_COLUMN_WIDTH})
+     */
+    private static final int FILE_COLUMN_WIDTH = 150;
+
+    /**
+     * Field timeFormat.
+     */
+    private final DateFormat timeFormat = DateFormat.getTimeInstance();
+
+    /**
+     * Field display.
+     */
+    private final Display display;
+
+    /**
+     * Field table.
+     */
+    private final Table table;
+
+    /**
+     * @param parent Composite
+     * @param style int
+     */
+    public PerformanceViewer(final Composite parent, final int style) {
+        super(parent, style);
+        display = parent.getDisplay();
+        setLayout(new GridLayout());
+        setLayoutData(new GridData(GridData.FILL_BOTH));
+        table = new Table(this, SWT.READ_ONLY | SWT.H_SCROLL | SWT.V_SCROLL | SWT.FULL_SELECTION);
+        table.setHeaderVisible(true);
+        table.setLinesVisible(true);
+        table.setLayoutData(new GridData(GridData.FILL_BOTH));
+        addColumn("Time", COLUMN_WIDTH);
+        addColumn("Operation", COLUMN_WIDTH);
+        addColumn("File", FILE_COLUMN_WIDTH);
+        addColumn("Nodes", COLUMN_WIDTH);
+        addColumn("Edges", COLUMN_WIDTH);
+        for (int phase = 0; phase < LoadMetrics.PHASE_COUNT; phase++) {
+            addColumn(LoadMetrics.getPhaseName(phase) + " (ms)", COLUMN_WIDTH);
+        }
+        addColumn("Total (ms)", COLUMN_WIDTH);
+        addColumn("Allocated (MB)", COLUMN_WIDTH);
+        addColumn("Layout", COLUMN_WIDTH);
+
+        for (final LoadMetrics metrics : PipelineMetrics.getInstance().getLoads()) {
+            addRow(metrics);
+        }
+        PipelineMetrics.getInstance().addListener(this);
+        addDisposeListener(e -> PipelineMetrics.getInstance().removeListener(this));
+    }
+
+    /**
+     * Method loadRecorded.
+     * @param metrics LoadMetrics
+     * @see net.ggtools.grand.ui.graph.PipelineMetricsListener#loadRecorded(LoadMetrics)
+     */
+    public final void loadRecorded(final LoadMetrics metrics) {
+        if (!display.isDisposed()) {
+            display.asyncExec(() -> {
+                if (!isDisposed()) {
+                    addRow(metrics);
+                    table.showItem(table.getItem(table.getItemCount() - 1));
+                }
+            });
+        }
+    }
+
+    /**
+     * Method addColumn.
+     * @param header String
+     * @param width int
+     */
+    private void addColumn(final String header, final int width) {
+        final TableColumn column = new TableColumn(table, SWT.LEFT);
+        column.setText(header);
+        column.setWidth(width);
+        column.setMoveable(true);
+    }
+
+    /**
+     * Method addRow.
+     * @param metrics LoadMetrics
+     */
+    private void addRow(final LoadMetrics metrics) {
+        final String[] texts = new String[table.getColumnCount()];
+        int column = 0;
+        texts[column++] = timeFormat.format(new Date(metrics.getStartTime()));
+        texts[column++] = metrics.isCompleted() ? metrics.getOperation()
+                : metrics.getOperation() + " (aborted)";
+        texts[column++] = (metrics.getFileName() == null) ? ""
+                : new File(metrics.getFileName()).getName();
+        texts[column++] = formatCount(metrics.getNodeCount());
+        texts[column++] = formatCount(metrics.getEdgeCount());
+        for (int phase = 0; phase < LoadMetrics.PHASE_COUNT; phase++) {
+            texts[column++] = formatDuration(metrics.getDuration(phase));
+        }
+        texts[column++] = formatDuration(metrics.getTotalDuration());
+        final long allocated = metrics.getTotalAllocatedBytes();
+        texts[column++] = (allocated < 0) ? "" : String.format("%.1f", allocated / BYTES_PER_MB);
+        texts[column++] = metrics.getLayoutSource();
+        final TableItem item = new TableItem(table, SWT.NONE);
+        item.setText(texts);
+    }
+
+    /**
+     * Method formatCount.
+     * @param count int
+     * @return String
+     */
+    private String formatCount(final int count) {
+        return (count < 0) ? "" : Integer.toString(count);
+    }
+
+    /**
+     * Method formatDuration.
+     * @param nanos long
+     * @return String
+     */
+    private String formatDuration(final long nanos) {
+        return (nanos < 0) ? "" : Long.toString(nanos / NANOS_PER_MILLI);
+    }
+}
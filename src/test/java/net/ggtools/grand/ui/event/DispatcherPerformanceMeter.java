@@ -105,5 +105,15 @@ public class DispatcherPerformanceMeter {
         }
         timer.stop();
         System.out.println(" -> " + timer);
+        System.out.println("Testing lambda dispatcher");
+        final Dispatcher lambdaDispatcher = new LambdaDispatcherFactory().createDispatcher(null,
+                Listener.class.getDeclaredMethod("listen", Object.class));
+        timer.reset();
+        timer.start();
+        for (int i = 0; i < LOOP; i++) {
+            lambdaDispatcher.sendEventToSubscriber(subscriber, "Test data");
+        }
+        timer.stop();
+        System.out.println(" -> " + timer);
     }
 }
@@ -0,0 +1,108 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+
+import org.junit.Test;
+
+import sf.jzgraph.IDotGraph;
+import sf.jzgraph.IGraph;
+import sf.jzgraph.IVertex;
+import sf.jzgraph.dot.impl.DotGraph;
+
+/**
+ * Tests for {@link ComponentLayout}.
+ *
+ * @author Christophe Labouisse
+ */
+public class ComponentLayoutTest {
+
+    /**
+     * Returns the bounds of a list of layed out vertices.
+     * @param vertices IVertex[]
+     * @return Rectangle2D
+     */
+    private static Rectangle2D boundsOf(final IVertex... vertices) {
+        Rectangle2D bounds = null;
+        for (final IVertex vertex : vertices) {
+            final Rectangle2D vertexBounds =
+                    LayoutGeometry.getBounds(vertex.getAttr(DotGraphAttributes._BOUNDS_ATTR));
+            assertNotNull(vertex.getName() + " has not been layed out", vertexBounds);
+            if (bounds == null) {
+                bounds = (Rectangle2D) vertexBounds.clone();
+            } else {
+                bounds.add(vertexBounds);
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Method testDisjointComponentsDoNotOverlap.
+     */
+    @Test
+    public void testDisjointComponentsDoNotOverlap() {
+        final IDotGraph graph = new DotGraph(IGraph.GRAPH, "test");
+        final IVertex a = graph.newVertex("a", null);
+        final IVertex b = graph.newVertex("b", null);
+        final IVertex c = graph.newVertex("c", null);
+        final IVertex d = graph.newVertex("d", null);
+        graph.newEdge(a, b, "a->b", null);
+        graph.newEdge(c, d, "c->d", null);
+
+        assertTrue(new ComponentLayout(graph).layout());
+
+        final Rectangle2D first = boundsOf(a, b);
+        final Rectangle2D second = boundsOf(c, d);
+        assertFalse("components overlap: " + first + " / " + second,
+                first.intersects(second));
+    }
+
+    /**
+     * Method testSingleComponentIsLayedOut.
+     */
+    @Test
+    public void testSingleComponentIsLayedOut() {
+        final IDotGraph graph = new DotGraph(IGraph.GRAPH, "test");
+        final IVertex a = graph.newVertex("a", null);
+        final IVertex b = graph.newVertex("b", null);
+        graph.newEdge(a, b, "a->b", null);
+
+        assertTrue(new ComponentLayout(graph).layout());
+
+        assertEquals(2, graph.allVertices().size());
+        boundsOf(a, b);
+    }
+}
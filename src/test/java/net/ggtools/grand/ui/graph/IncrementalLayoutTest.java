@@ -0,0 +1,138 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import sf.jzgraph.IDotGraph;
+import sf.jzgraph.IGraph;
+import sf.jzgraph.IVertex;
+import sf.jzgraph.dot.impl.DotGraph;
+
+/**
+ * Tests for {@link IncrementalLayout}.
+ *
+ * @author Christophe Labouisse
+ */
+public class IncrementalLayoutTest {
+
+    /**
+     * Builds a chain of vertices, layed out on a rank each when
+     * <code>layedOut</code> is set.
+     * @param layedOut boolean
+     * @param names String[]
+     * @return IDotGraph
+     */
+    private static IDotGraph createChain(final boolean layedOut, final String... names) {
+        final IDotGraph graph = new DotGraph(IGraph.GRAPH, "test");
+        IVertex last = null;
+        for (int i = 0; i < names.length; i++) {
+            final IVertex vertex = graph.newVertex(names[i], null);
+            if (layedOut) {
+                vertex.setAttr(DotGraphAttributes._BOUNDS_ATTR,
+                        new Rectangle2D.Double(0, i * 100, 60, 30));
+            }
+            if (last != null) {
+                graph.newEdge(last, vertex, last.getName() + "->" + names[i], null);
+            }
+            last = vertex;
+        }
+        return graph;
+    }
+
+    /**
+     * Field previous.
+     */
+    private IDotGraph previous;
+
+    /**
+     * Method setUp.
+     */
+    @Before
+    public void setUp() {
+        previous = createChain(true, "a", "b", "c", "d");
+    }
+
+    /**
+     * Method testIdenticalGraphIsNotIncremental.
+     */
+    @Test
+    public void testIdenticalGraphIsNotIncremental() {
+        final IDotGraph graph = createChain(false, "a", "b", "c", "d");
+        assertFalse(new IncrementalLayout(previous, false).layout(graph, false));
+    }
+
+    /**
+     * Method testLayoutModeChangeIsNotIncremental.
+     */
+    @Test
+    public void testLayoutModeChangeIsNotIncremental() {
+        final IDotGraph graph = createChain(false, "a", "b", "c");
+        assertFalse(new IncrementalLayout(previous, false).layout(graph, true));
+    }
+
+    /**
+     * Method testRemovedVertexReusesLayout.
+     */
+    @Test
+    public void testRemovedVertexReusesLayout() {
+        final IDotGraph graph = createChain(false, "a", "b", "c");
+        assertTrue(new IncrementalLayout(previous, true).layout(graph, true));
+        for (final Object o : graph.allVertices()) {
+            final IVertex vertex = (IVertex) o;
+            final Rectangle2D bounds =
+                    (Rectangle2D) vertex.getAttr(DotGraphAttributes._BOUNDS_ATTR);
+            assertEquals(vertex.getName(), 60, bounds.getWidth(), 0);
+            assertEquals(vertex.getName(), 30, bounds.getHeight(), 0);
+        }
+    }
+
+    /**
+     * Method testRemovedInnerVertexCollapsesRank.
+     */
+    @Test
+    public void testRemovedInnerVertexCollapsesRank() {
+        final IDotGraph graph = new DotGraph(IGraph.GRAPH, "test");
+        final IVertex a = graph.newVertex("a", null);
+        final IVertex c = graph.newVertex("c", null);
+        graph.newVertex("d", null);
+        assertTrue(new IncrementalLayout(previous, false).layout(graph, false));
+        final double aBottom =
+                ((Rectangle2D) a.getAttr(DotGraphAttributes._BOUNDS_ATTR)).getMaxY();
+        final double cTop = ((Rectangle2D) c.getAttr(DotGraphAttributes._BOUNDS_ATTR)).getMinY();
+        assertEquals(70, cTop - aBottom, 0.001);
+    }
+}
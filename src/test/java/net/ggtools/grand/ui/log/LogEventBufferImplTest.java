@@ -0,0 +1,220 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.ggtools.grand.ui.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for the retention policy and the concurrent append path of
+ * {@link LogEventBufferImpl}.
+ *
+ * @author Christophe Labouisse
+ */
+public class LogEventBufferImplTest {
+
+    /**
+     * Field THREAD_COUNT.
+     * (value is {@value #THREAD_COUNT})
+     */
+    private static final int THREAD_COUNT = 4;
+
+    /**
+     * Field EVENTS_PER_THREAD.
+     * (value is {@value #EVENTS_PER_THREAD})
+     */
+    private static final int EVENTS_PER_THREAD = 200000;
+
+    /**
+     * Field buffer.
+     */
+    private LogEventBufferImpl buffer;
+
+    /**
+     * Resets the singleton to an empty buffer with the default retention.
+     */
+    @Before
+    public void setUp() {
+        buffer = LogEventBufferImpl.getInstance();
+        resetBuffer();
+    }
+
+    /**
+     * Leaves the singleton as the application expects it.
+     */
+    @After
+    public void tearDown() {
+        resetBuffer();
+    }
+
+    /**
+     * Method testDebugChurnKeepsErrors.
+     */
+    @Test
+    public void testDebugChurnKeepsErrors() {
+        buffer.setRetention(100, 10, 10, 10);
+        for (int i = 0; i < 5; i++) {
+            buffer.addLogEvent(LogEvent.ERROR, "test", "Error " + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            buffer.addLogEvent(LogEvent.DEBUG, "test", "Debug " + i);
+        }
+        final List<LogEvent> events = buffer.getEventList();
+        assertEquals(100, events.size());
+        assertEquals(905, buffer.getDroppedCount());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(LogEvent.ERROR, events.get(i).getLevel());
+            assertEquals("Error " + i, events.get(i).getMessage());
+        }
+        assertEquals("Debug 999", events.get(99).getMessage());
+    }
+
+    /**
+     * Method testErrorsBeyondQuota.
+     */
+    @Test
+    public void testErrorsBeyondQuota() {
+        buffer.setRetention(100, 10, 10, 10);
+        for (int i = 0; i < 20; i++) {
+            buffer.addLogEvent(LogEvent.ERROR, "test", "Error " + i);
+        }
+        for (int i = 0; i < 1000; i++) {
+            buffer.addLogEvent(LogEvent.DEBUG, "test", "Debug " + i);
+        }
+        final List<LogEvent> events = buffer.getEventList();
+        assertEquals(100, events.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals("Error " + (i + 10), events.get(i).getMessage());
+        }
+        assertEquals(LogEvent.DEBUG, events.get(10).getLevel());
+    }
+
+    /**
+     * Method testShrinkCapacity.
+     */
+    @Test
+    public void testShrinkCapacity() {
+        for (int i = 0; i < 50; i++) {
+            buffer.addLogEvent(LogEvent.INFO, "test", "Info " + i);
+        }
+        assertEquals(0, buffer.getDroppedCount());
+        buffer.setRetention(20, 0, 0, 0);
+        assertEquals(20, buffer.getCapacity());
+        assertEquals(30, buffer.getDroppedCount());
+        final List<LogEvent> events = buffer.getEventList();
+        assertEquals(20, events.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("Info " + (i + 30), events.get(i).getMessage());
+        }
+    }
+
+    /**
+     * Method testEventsAfter.
+     */
+    @Test
+    public void testEventsAfter() {
+        buffer.setRetention(10, 0, 0, 0);
+        for (int i = 0; i < 25; i++) {
+            buffer.addLogEvent(i % 2 == 0 ? LogEvent.INFO : LogEvent.WARNING, "test", "Event " + i);
+        }
+        final List<LogEvent> events = buffer.getEventList();
+        assertEquals(10, events.size());
+        assertEquals(15, buffer.getDroppedCount());
+        assertEquals(events, buffer.getEventsAfter(-1L));
+
+        final long first = events.get(0).getSequence();
+        final long last = events.get(9).getSequence();
+        assertEquals(9, last - first);
+        assertTrue(buffer.getEventsAfter(last).isEmpty());
+        assertEquals(events.subList(5, 10), buffer.getEventsAfter(first + 4));
+
+        // Events dropped since the reader's last sequence are simply missing.
+        buffer.addLogEvent(LogEvent.INFO, "test", "Event 25");
+        final List<LogEvent> after = buffer.getEventsAfter(first - 5);
+        assertEquals(10, after.size());
+        assertEquals(16, buffer.getDroppedCount());
+        assertEquals(first + 1, after.get(0).getSequence());
+        assertEquals("Event 25", after.get(9).getMessage());
+    }
+
+    /**
+     * Method testConcurrentAppends.
+     * @throws InterruptedException if interrupted while waiting for the
+     *             producers
+     */
+    @Test
+    public void testConcurrentAppends() throws InterruptedException {
+        buffer.setRetention(1000, 100, 100, 100);
+        final List<Thread> producers = new ArrayList<>(THREAD_COUNT);
+        for (int t = 0; t < THREAD_COUNT; t++) {
+            final String originator = "Producer " + t;
+            final Thread producer = new Thread(() -> {
+                for (int i = 0; i < EVENTS_PER_THREAD; i++) {
+                    buffer.addLogEvent(i % 100 == 0 ? LogEvent.ERROR : LogEvent.DEBUG,
+                            originator, "Event");
+                }
+            }, originator);
+            producers.add(producer);
+            producer.start();
+        }
+        for (final Thread producer : producers) {
+            producer.join();
+        }
+
+        final List<LogEvent> events = buffer.getEventList();
+        assertEquals(1000, events.size());
+        assertEquals(THREAD_COUNT * EVENTS_PER_THREAD, events.size() + buffer.getDroppedCount());
+        int errors = 0;
+        for (int i = 0; i < events.size(); i++) {
+            if (i > 0) {
+                assertTrue(events.get(i).getSequence() > events.get(i - 1).getSequence());
+            }
+            if (events.get(i).getLevel() == LogEvent.ERROR) {
+                errors++;
+            }
+        }
+        assertTrue("Errors evicted below their quota: " + errors, errors >= 100);
+    }
+
+    /**
+     * Restores the default retention and empties the buffer.
+     */
+    private void resetBuffer() {
+        buffer.setRetention(LogEventBufferImpl.DEFAULT_CAPACITY,
+                LogEventBufferImpl.DEFAULT_ERROR_QUOTA, LogEventBufferImpl.DEFAULT_WARNING_QUOTA,
+                LogEventBufferImpl.DEFAULT_INFO_QUOTA);
+        buffer.clearLogEvents();
+    }
+}
@@ -0,0 +1,190 @@
+// $Id$
+/*
+ * ====================================================================
+ * Copyright (c) 2002-2003, Christophe Labouisse All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ *
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package net.ggtools.grand.ui.log;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link LogFileWriter} and {@link LogFileReader}.
+ *
+ * @author Christophe Labouisse
+ */
+public class LogFileTest {
+
+    /**
+     * Offset of the first event record: the header followed by the string
+     * record of the originator "test".
+     * (value is {@value #FIRST_EVENT_OFFSET})
+     */
+    private static final int FIRST_EVENT_OFFSET = LogFileFormat.HEADER_SIZE + 4 + 1 + 4 + 4 + 4;
+
+    /**
+     * Offset of the originator id in the first event record.
+     * (value is {@value #ORIGINATOR_OFFSET})
+     */
+    private static final int ORIGINATOR_OFFSET = FIRST_EVENT_OFFSET + 4 + 1 + 8 + 8 + 1;
+
+    /**
+     * Field folder.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Field logFile.
+     */
+    private File logFile;
+
+    /**
+     * Writes a log of three events, the last one with an exception.
+     * @throws IOException if the log cannot be written
+     */
+    @Before
+    public void setUp() throws IOException {
+        logFile = folder.newFile("test.glg");
+        try (LogFileWriter writer = new LogFileWriter(new FileOutputStream(logFile), 42)) {
+            for (int i = 1; i <= 3; i++) {
+                final LogEvent event = new LogEvent(i == 3 ? LogEvent.ERROR : LogEvent.INFO,
+                        i == 2 ? null : "test", "Message " + i,
+                        i == 3 ? new IllegalStateException("Failure") : null);
+                event.setSequence(i);
+                event.setTime(1000L * i);
+                writer.write(event);
+            }
+        }
+    }
+
+    /**
+     * Method testRoundTrip.
+     * @throws IOException if the log cannot be read
+     */
+    @Test
+    public void testRoundTrip() throws IOException {
+        assertTrue(LogFileReader.isLogFile(logFile));
+        try (LogFileReader reader = new LogFileReader(logFile)) {
+            assertEquals(42, reader.getDroppedCount());
+            for (int i = 1; i <= 3; i++) {
+                final LogEvent event = reader.next();
+                assertEquals(i, event.getSequence());
+                assertEquals(1000L * i, event.getTime());
+                assertEquals(i == 3 ? LogEvent.ERROR : LogEvent.INFO, event.getLevel());
+                assertEquals(i == 2 ? null : "test", event.getOriginator());
+                assertEquals("Message " + i, event.getMessage());
+            }
+            assertNull(reader.next());
+            assertEquals(1.0, reader.getProgress(), 0);
+        }
+    }
+
+    /**
+     * Method testException.
+     * @throws IOException if the log cannot be read
+     */
+    @Test
+    public void testException() throws IOException {
+        try (LogFileReader reader = new LogFileReader(logFile)) {
+            reader.next();
+            reader.next();
+            final Throwable exception = reader.next().getException();
+            assertEquals("Failure", exception.getMessage());
+            assertEquals(IllegalStateException.class.getName(),
+                    SavedException.getClassName(exception));
+        }
+    }
+
+    /**
+     * Method testTruncatedFile.
+     * @throws IOException if the log cannot be read
+     */
+    @Test
+    public void testTruncatedFile() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+            raf.setLength(raf.length() - 10);
+        }
+        try (LogFileReader reader = new LogFileReader(logFile)) {
+            assertEquals("Message 1", reader.next().getMessage());
+            assertEquals("Message 2", reader.next().getMessage());
+            assertNull(reader.next());
+        }
+    }
+
+    /**
+     * Method testUnknownOriginator.
+     * @throws IOException if the log cannot be patched
+     */
+    @Test
+    public void testUnknownOriginator() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+            raf.seek(ORIGINATOR_OFFSET);
+            raf.writeInt(99);
+        }
+        assertCorrupted();
+    }
+
+    /**
+     * Method testRecordTooShort.
+     * @throws IOException if the log cannot be patched
+     */
+    @Test
+    public void testRecordTooShort() throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(logFile, "rw")) {
+            raf.seek(FIRST_EVENT_OFFSET);
+            raf.writeInt(10);
+        }
+        assertCorrupted();
+    }
+
+    /**
+     * Checks that reading the first event fails with an {@link IOException}.
+     * @throws IOException if the log cannot be opened
+     */
+    private void assertCorrupted() throws IOException {
+        try (LogFileReader reader = new LogFileReader(logFile)) {
+            try {
+                reader.next();
+                fail("Corrupted record not detected");
+            } catch (final IOException e) {
+                // Expected.
+            }
+        }
+    }
+}